@@ -0,0 +1,66 @@
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Pre-generated benchmark fixtures.  Every graph is built from a fixed
+ * Random seed, so every run (and every fork) benchmarks exactly the same input.
+ * <p>
+ * This class is in the default package next to the solver classes; the JMH
+ * benchmarks themselves (which JMH requires to be in a named package) reach it
+ * through {@code benchmarks.Solvers}.
+ */
+public class BenchmarkGraphs {
+
+    public static final long SEED = 20251005L;
+    public static final int MAX_GOLD = 10;
+
+    /**
+     * @param shape              - "chain", "forest" (addEdgeProbability 0.99) or "star"
+     * @param size               - number of vertices
+     * @param specialProbability - probability of each of the *, ! and # flags
+     */
+    public static LabeledValueGraph make(String shape, int size, double specialProbability) {
+        RandomForestGenerator maker = new RandomForestGenerator(new Random(SEED));
+        switch (shape) {
+            case "chain":
+                return maker.makeRandomChainGraph(size, MAX_GOLD,
+                        specialProbability, specialProbability, specialProbability);
+            case "forest":
+                return maker.makeRandomAcyclicGraph(size, MAX_GOLD, 0.99,
+                        specialProbability, specialProbability, specialProbability);
+            case "star":
+                return maker.makeRandomStarGraph(size, MAX_GOLD,
+                        specialProbability, specialProbability, specialProbability);
+            default:
+                throw new IllegalArgumentException("Unknown graph shape: " + shape);
+        }
+    }
+
+    /**
+     * Solves the graph with a fresh instance of the named strategy.
+     */
+    public static List<String> solve(String strategy, LabeledValueGraph graph) {
+        return newStrategy(strategy).chooseOrderToAttack(graph);
+    }
+
+    /**
+     * @return a fresh instance of the named strategy (strategies may keep state
+     * between calls, so benchmarks never reuse an instance)
+     */
+    public static RobbingStrategy newStrategy(String name) {
+        switch (name) {
+            case "GreedyStrategy":
+                return new GreedyStrategy();
+            case "DPStrategy":
+                return new DPStrategy();
+            case "BruteForceStrategy":
+                return new BruteForceStrategy();
+            case "SubsetDPStrategy":
+                return new SubsetDPStrategy();
+            case "BranchAndBoundStrategy":
+                return new BranchAndBoundStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Bridge to the solver classes.  They live in the default package, which a
+ * named package can't import, and JMH refuses benchmark classes in the
+ * default package, so the benchmarks call BenchmarkGraphs through method
+ * handles resolved once at class-initialization time.
+ */
+final class Solvers {
+    private static final MethodHandle MAKE_GRAPH;
+    private static final MethodHandle SOLVE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> fixtures = Class.forName("BenchmarkGraphs");
+            Class<?> graphClass = Class.forName("LabeledValueGraph");
+            MAKE_GRAPH = lookup.findStatic(fixtures, "make",
+                            MethodType.methodType(graphClass, String.class, int.class, double.class))
+                    .asType(MethodType.methodType(Object.class, String.class, int.class, double.class));
+            SOLVE = lookup.findStatic(fixtures, "solve",
+                            MethodType.methodType(java.util.List.class, String.class, graphClass))
+                    .asType(MethodType.methodType(Object.class, String.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Solvers() {
+    }
+
+    /** @return a LabeledValueGraph built by BenchmarkGraphs.make */
+    static Object makeGraph(String shape, int size, double specialProbability) {
+        try {
+            return (Object) MAKE_GRAPH.invokeExact(shape, size, specialProbability);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /** @return the attack order chosen by a fresh instance of the named strategy */
+    static Object solve(String strategy, Object graph) {
+        try {
+            return (Object) SOLVE.invokeExact(strategy, graph);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the polynomial strategies on large graphs.  Graph generation
+ * happens once per trial in setUp, so it is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StrategyBenchmark {
+
+    @Param({"GreedyStrategy", "DPStrategy"})
+    public String strategy;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"chain", "forest", "star"})
+    public String shape;
+
+    @Param({"0.0", "0.2"})
+    public double specialProbability;
+
+    private Object graph; // a LabeledValueGraph, see Solvers
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = Solvers.makeGraph(shape, size, specialProbability);
+    }
+
+    @Benchmark
+    public Object solve() {
+        return Solvers.solve(strategy, graph);
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chains the strategies from fast-and-rough to slow-and-exact, so there is
+ * always an answer ready and it only gets better while the budget lasts:
+ * <ol>
+ *   <li>GreedyStrategy gives the first order almost immediately,</li>
+ *   <li>LocalSearchStrategy polishes that order until it's locally optimal,</li>
+ *   <li>then an exact stage: DPStrategy if the graph is a forest (where it's
+ *       optimal and fast), otherwise BranchAndBoundStrategy, which keeps
+ *       reporting better orders until it proves the best one or time's up.</li>
+ * </ol>
+ * The listener only hears about orders that beat everything reported before,
+ * whichever stage found them.
+ */
+public class AnytimeSolver implements AnytimeStrategy {
+
+    @Override
+    public List<String> chooseOrderToAttack(LabeledValueGraph graph, SearchBudget budget, Listener listener) {
+        graph.freeze();
+        Best best = new Best(graph, listener);
+
+        best.offer(new GreedyStrategy().chooseOrderToAttack(graph));
+
+        if (!budget.isExpired()) {
+            List<String> greedyOrder = best.order();
+            new LocalSearchStrategy(g -> greedyOrder, Long.MAX_VALUE).chooseOrderToAttack(graph, budget, best);
+        }
+
+        if (!budget.isExpired()) {
+            if (isForest(graph)) {
+                best.offer(new DPStrategy().chooseOrderToAttack(graph));
+            } else {
+                new BranchAndBoundStrategy().chooseOrderToAttack(graph, budget, best);
+            }
+        }
+        return best.order();
+    }
+
+    // a graph is a forest exactly when it has (vertices - components) edges
+    private static boolean isForest(LabeledValueGraph graph) {
+        int n = graph.vertexCount();
+        int edges = n == 0 ? 0 : graph.adjEnd(n - 1) / 2;
+        return edges == n - new ComponentDecomposition(graph).componentCount();
+    }
+
+    /** The best order from any stage so far; passes on only real improvements. */
+    private static class Best implements Listener {
+        private final LabeledValueGraph graph;
+        private final Listener listener;
+        private double gold = Double.NEGATIVE_INFINITY;
+        private List<String> order;
+
+        Best(LabeledValueGraph graph, Listener listener) {
+            this.graph = graph;
+            this.listener = listener;
+        }
+
+        void offer(List<String> order) {
+            improved(AttackValueVerifier.computeGoldForAttackOrdering(graph, order, false), order);
+        }
+
+        @Override
+        public synchronized void improved(double gold, List<String> order) {
+            if (gold <= this.gold) {
+                return;
+            }
+            this.gold = gold;
+            this.order = new ArrayList<>(order); // the stages may keep changing their own list
+            listener.improved(gold, Collections.unmodifiableList(this.order));
+        }
+
+        synchronized List<String> order() {
+            return order;
+        }
+    }
+}
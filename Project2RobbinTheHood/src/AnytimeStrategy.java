@@ -0,0 +1,34 @@
+import java.util.List;
+
+/**
+ * A strategy that can be stopped early.  Instead of being all-or-nothing, it
+ * reports every better attack order it finds along the way, and when the
+ * budget runs out (or is cancelled) it returns the best one so far.
+ */
+public interface AnytimeStrategy extends RobbingStrategy {
+
+    /**
+     * Gets told about each new best order.  Calls come in order of strictly
+     * increasing gold; they may come from a worker thread, but never two at once.
+     */
+    @FunctionalInterface
+    interface Listener {
+        Listener NONE = (gold, order) -> { };
+
+        void improved(double gold, List<String> order);
+    }
+
+    /**
+     * @param graph    - the forts to rob
+     * @param budget   - when to give up and return the best order so far
+     * @param listener - receives each improved order as it's found
+     * @return the best attack order found within the budget
+     */
+    List<String> chooseOrderToAttack(LabeledValueGraph graph, SearchBudget budget, Listener listener);
+
+    /** Runs without a deadline (until the strategy finishes on its own). */
+    @Override
+    default List<String> chooseOrderToAttack(LabeledValueGraph graph) {
+        return chooseOrderToAttack(graph, SearchBudget.unlimited(), Listener.NONE);
+    }
+}
@@ -0,0 +1,236 @@
+import java.util.List;
+
+/**
+ * A reusable, incremental version of {@link AttackValueVerifier}.
+ * <p>
+ * Instead of scoring a whole ordering at once, forts are pushed onto (and
+ * popped off) the end of the current attack order one at a time, and the gold
+ * of the prefix is kept up to date.  Each push/pop only touches the fort's own
+ * neighbors, so search algorithms can score every prefix they explore without
+ * rescanning it.  Everything is kept in primitive arrays indexed by vertex id:
+ * the decoded flags, a bitset of attacked forts, and for every fort the number
+ * of attacked non-shield neighbors (a count rather than a single bit, so a pop
+ * can tell whether some other attacked neighbor still keeps the fort on alert).
+ * <p>
+ * Gold is added up in the same order and with the same arithmetic as the
+ * verifier, so {@link #evaluate(List)} gives bit-for-bit the same double.
+ * <p>
+ * The evaluator works on a snapshot of the graph taken when it's created
+ * (the graph is frozen if it isn't already), and {@link #reset()} clears it
+ * for the next ordering without allocating anything.
+ */
+public class AttackEvaluator {
+
+    private final LabeledValueGraph graph;
+    private final int n;
+    private final int[] values;
+    private final byte[] flags;
+    private final int[] adjOffsets;
+    private final int[] adjTargets;
+
+    private final long[] attacked;      // bitset over vertex ids
+    private final int[] alertCount;     // number of attacked, non-shield neighbors
+    private final int[] order;
+    private final double[] savedTotal;
+    private final double[] savedBound;
+    private final double initialBound;
+    private int size;
+    private double total;
+    private double remainingBound;
+
+    public AttackEvaluator(LabeledValueGraph graph) {
+        this.graph = graph.freeze();
+        n = graph.vertexCount();
+        values = new int[n];
+        flags = new byte[n];
+        adjOffsets = new int[n + 1];
+        double bound = 0;
+        for (int v = 0; v < n; v++) {
+            values[v] = graph.valueOf(v);
+            flags[v] = graph.flagsOf(v);
+            adjOffsets[v + 1] = graph.adjEnd(v);
+            bound += maxGold(v);
+        }
+        adjTargets = new int[adjOffsets[n]];
+        for (int e = 0; e < adjTargets.length; e++) {
+            adjTargets[e] = graph.adjTarget(e);
+        }
+        initialBound = bound;
+
+        attacked = new long[(n + 63) >>> 6];
+        alertCount = new int[n];
+        order = new int[n];
+        savedTotal = new double[n];
+        savedBound = new double[n];
+        remainingBound = initialBound;
+    }
+
+    /** @return the (frozen) graph this evaluator scores orderings for */
+    public LabeledValueGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Clears the current attack order.  Only the forts that were actually
+     * attacked are touched, so this is cheap after a short prefix.
+     */
+    public void reset() {
+        while (size > 0) {
+            pop();
+        }
+    }
+
+    /**
+     * Scores a complete (or partial) ordering from scratch, exactly like
+     * {@link AttackValueVerifier#computeGoldForAttackOrdering(LabeledValueGraph, List)}.
+     * The evaluator is left holding that ordering.
+     */
+    public double evaluate(List<String> attackOrdering) {
+        reset();
+        for (String fortName : attackOrdering) {
+            int v = graph.indexOf(fortName);
+            if (v < 0) {
+                reset();
+                throw new IllegalArgumentException("Vertex with label " + fortName + " does not exist in the graph.");
+            }
+            if (isAttacked(v)) {
+                reset();
+                throw new IllegalArgumentException("Attack ordering contains duplicates: " + attackOrdering);
+            }
+            push(v);
+        }
+        return total;
+    }
+
+    /** Same as {@link #evaluate(List)}, for an ordering given as vertex ids. */
+    public double evaluate(int[] attackOrdering) {
+        reset();
+        for (int v : attackOrdering) {
+            push(v);
+        }
+        return total;
+    }
+
+    /**
+     * @return the gold fort v would give if it were attacked next
+     */
+    public double goldIfAttackedNext(int v) {
+        double goldHere = values[v];
+        if (isAlerted(v) && (flags[v] & LabeledValueGraph.IMMUNE) == 0) {
+            goldHere = goldHere / 2.0;
+        }
+        return goldHere;
+    }
+
+    /**
+     * Attacks fort v next.
+     *
+     * @return the gold stolen from v
+     * @throws IllegalArgumentException if v is already in the attack order
+     */
+    public double push(int v) {
+        if (isAttacked(v)) {
+            throw new IllegalArgumentException("Fort " + graph.labelOf(v) + " is already in the attack order.");
+        }
+        double goldHere = goldIfAttackedNext(v);
+        savedTotal[size] = total;
+        savedBound[size] = remainingBound;
+        order[size++] = v;
+        attacked[v >>> 6] |= 1L << v;
+        total += goldHere;
+        remainingBound -= goldHere;
+
+        if ((flags[v] & LabeledValueGraph.SHIELD) == 0) {
+            for (int e = adjOffsets[v]; e < adjOffsets[v + 1]; e++) {
+                int w = adjTargets[e];
+                if (alertCount[w]++ == 0 && !isAttacked(w) && (flags[w] & (LabeledValueGraph.SELF_ALERT | LabeledValueGraph.IMMUNE)) == 0) {
+                    // w just lost the chance of giving full gold
+                    remainingBound -= values[w] / 2.0;
+                }
+            }
+        }
+        return goldHere;
+    }
+
+    /** Attacks the fort with the given label next. */
+    public double push(String fortName) {
+        int v = graph.indexOf(fortName);
+        if (v < 0) {
+            throw new IllegalArgumentException("Vertex with label " + fortName + " does not exist in the graph.");
+        }
+        return push(v);
+    }
+
+    /**
+     * Takes the last fort back off the attack order.
+     *
+     * @return the id of that fort
+     */
+    public int pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Attack order is empty.");
+        }
+        int v = order[--size];
+        if ((flags[v] & LabeledValueGraph.SHIELD) == 0) {
+            for (int e = adjOffsets[v]; e < adjOffsets[v + 1]; e++) {
+                alertCount[adjTargets[e]]--;
+            }
+        }
+        attacked[v >>> 6] &= ~(1L << v);
+        total = savedTotal[size];
+        remainingBound = savedBound[size];
+        return v;
+    }
+
+    /** @return the gold stolen by the current attack order */
+    public double total() {
+        return total;
+    }
+
+    /**
+     * @return an upper bound on the gold still to be had from the forts not yet
+     * attacked: full gold for forts that aren't on alert yet, what they'd give
+     * on alert for the rest
+     */
+    public double remainingBound() {
+        return remainingBound;
+    }
+
+    /** @return number of forts in the current attack order */
+    public int size() {
+        return size;
+    }
+
+    /** @return the id of the i-th fort in the current attack order */
+    public int attackAt(int i) {
+        return order[i];
+    }
+
+    /** @return the id of the most recently attacked fort, or -1 if there is none */
+    public int last() {
+        return size > 0 ? order[size - 1] : -1;
+    }
+
+    /** @return true if fort v is in the current attack order */
+    public boolean isAttacked(int v) {
+        return (attacked[v >>> 6] & (1L << v)) != 0;
+    }
+
+    /** @return true if fort v would be attacked on high alert if it were attacked now */
+    public boolean isAlerted(int v) {
+        return alertCount[v] > 0 || (flags[v] & LabeledValueGraph.SELF_ALERT) != 0;
+    }
+
+    /** @return a copy of the current attack order as vertex ids */
+    public int[] currentOrder() {
+        int[] copy = new int[size];
+        System.arraycopy(order, 0, copy, 0, size);
+        return copy;
+    }
+
+    // the most gold v could ever give, given only its own flags
+    private double maxGold(int v) {
+        return (flags[v] & (LabeledValueGraph.SELF_ALERT | LabeledValueGraph.IMMUNE)) == LabeledValueGraph.SELF_ALERT
+                ? values[v] / 2.0 : values[v];
+    }
+}
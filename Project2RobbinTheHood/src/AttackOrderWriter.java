@@ -0,0 +1,45 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.PrimitiveIterator;
+
+/**
+ * Writes an attack order to a text file, one fort label per line.
+ * <p>
+ * The order comes in as fort ids (see {@link RobbingStrategy#attackOrderIds})
+ * and each label is only looked up as its line is written, so with a lazy
+ * strategy like DPStrategy even a huge order goes straight from the
+ * decision records to the file without ever being a List.
+ */
+public final class AttackOrderWriter {
+
+    private AttackOrderWriter() {
+    }
+
+    /**
+     * @return the number of forts written
+     */
+    public static long write(LabeledValueGraph graph, PrimitiveIterator.OfInt attackOrder, String filename) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8)) {
+            return write(graph, attackOrder, out);
+        }
+    }
+
+    /**
+     * Writes to out (which is not closed or flushed).
+     *
+     * @return the number of forts written
+     */
+    public static long write(LabeledValueGraph graph, PrimitiveIterator.OfInt attackOrder, Writer out) throws IOException {
+        long count = 0;
+        while (attackOrder.hasNext()) {
+            out.write(graph.labelOf(attackOrder.nextInt()));
+            out.write('\n');
+            count++;
+        }
+        return count;
+    }
+}
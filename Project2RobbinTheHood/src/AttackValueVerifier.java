@@ -1,6 +1,8 @@
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 
 public class AttackValueVerifier {
@@ -14,6 +16,8 @@ public class AttackValueVerifier {
     }
 
     public static double computeGoldForAttackOrdering(LabeledValueGraph graph, List<String> attackOrdering, boolean printDebugInfo) {
+        long start = Metrics.startTimer();
+        Metrics.increment(Metrics.Counter.VERIFIER_CALLS);
         if (new HashSet<>(attackOrdering).size() != attackOrdering.size()) {
             throw new IllegalArgumentException("Attack ordering contains duplicates: " + attackOrdering);
         }
@@ -21,21 +25,65 @@ public class AttackValueVerifier {
         Set<String> highAlertForts = new HashSet<>();
         for (String fortName : attackOrdering) {
             double goldHere = graph.getValueAt(fortName);
-            if (fortName.contains(""+(char)(obfuscated[0]>>1))) {
+            byte flags = graph.getFlags(fortName);
+            if ((flags & LabeledValueGraph.SELF_ALERT) != 0) {
                 highAlertForts.add(fortName);
             }
-            if (highAlertForts.contains(fortName) && !fortName.contains(""+(char)(obfuscated[1]<<1))) {
+            if (highAlertForts.contains(fortName) && (flags & LabeledValueGraph.IMMUNE) == 0) {
                 goldHere = goldHere / 2.0;
             }
             if (printDebugInfo) {
                 System.out.println("Stole " + goldHere + " from " + fortName);
             }
             totalGold += goldHere;
-            if (!fortName.contains(""+(char)(obfuscated[2]>>1))) {
+            if ((flags & LabeledValueGraph.SHIELD) == 0) {
                 List<String> neighbors = graph.adj(fortName);
                 highAlertForts.addAll(neighbors);
             }
         }
+        Metrics.stopTimer(Metrics.Phase.VERIFY, start);
+        return totalGold;
+    }
+
+    /**
+     * Same as {@link #computeGoldForAttackOrdering(LabeledValueGraph, List)}, for an
+     * order given as fort ids of the (frozen) graph and read one at a time (e.g. from
+     * {@link RobbingStrategy#attackOrderIds}), so the order never has to be a List of
+     * labels.  The gold is added up in the same order, so it comes out the same.
+     */
+    public static double computeGoldForAttackOrdering(LabeledValueGraph graph, PrimitiveIterator.OfInt attackOrdering) {
+        long start = Metrics.startTimer();
+        Metrics.increment(Metrics.Counter.VERIFIER_CALLS);
+        graph.freeze();
+        int n = graph.vertexCount();
+        BitSet attacked = new BitSet(n);
+        BitSet highAlertForts = new BitSet(n);
+        double totalGold = 0;
+        while (attackOrdering.hasNext()) {
+            int fort = attackOrdering.nextInt();
+            if (fort < 0 || fort >= n) {
+                throw new IllegalArgumentException("Attack ordering contains a fort id that isn't in the graph: " + fort);
+            }
+            if (attacked.get(fort)) {
+                throw new IllegalArgumentException("Attack ordering contains duplicates: " + graph.labelOf(fort));
+            }
+            attacked.set(fort);
+            double goldHere = graph.valueOf(fort);
+            byte flags = graph.flagsOf(fort);
+            if ((flags & LabeledValueGraph.SELF_ALERT) != 0) {
+                highAlertForts.set(fort);
+            }
+            if (highAlertForts.get(fort) && (flags & LabeledValueGraph.IMMUNE) == 0) {
+                goldHere = goldHere / 2.0;
+            }
+            totalGold += goldHere;
+            if ((flags & LabeledValueGraph.SHIELD) == 0) {
+                for (int e = graph.adjStart(fort); e < graph.adjEnd(fort); e++) {
+                    highAlertForts.set(graph.adjTarget(e));
+                }
+            }
+        }
+        Metrics.stopTimer(Metrics.Phase.VERIFY, start);
         return totalGold;
     }
 }
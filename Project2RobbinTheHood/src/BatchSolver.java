@@ -0,0 +1,276 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Solves a whole batch of .graph files in one JVM.
+ * <p>
+ * Each file is one task on a work-stealing pool: the worker parses it, solves
+ * it with a fresh strategy from the factory, checks the gold with
+ * AttackValueVerifier and writes a result line.  A semaphore with
+ * {@code maxGraphsInMemory} permits is taken before a file is handed to the
+ * pool and given back when its task is done, so the submitting loop blocks
+ * (instead of queueing up more files) once that many graphs are being parsed
+ * or solved.
+ * <p>
+ * Results are written as they complete (so in completion order, not input
+ * order), one line per file, flushed right away.  The output is JSON lines
+ * if its name ends in ".jsonl" and CSV with a header otherwise.  The fields
+ * are file, strategy, gold, parse_ms, solve_ms, order_hash (a 64-bit FNV-1a
+ * hash of the attack order, in hex) and error (empty unless the file couldn't
+ * be read or solved).
+ * <p>
+ * Run it as {@code BatchSolver <directory|manifest> <output> [strategy [threads [maxGraphsInMemory]]]}.
+ * A manifest is a text file listing one .graph file per line (relative paths
+ * are relative to the manifest; blank lines and // comments are skipped).
+ */
+public class BatchSolver {
+
+    public static final int DEFAULT_MAX_GRAPHS_IN_MEMORY = 8;
+
+    private final Supplier<? extends RobbingStrategy> strategyFactory;
+    private final int threads;
+    private final int maxGraphsInMemory;
+
+    private final AtomicInteger solved = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * @param strategyFactory   - creates the strategy for each file (a fresh instance per
+     *                          file, since some strategies keep state)
+     * @param threads           - number of worker threads
+     * @param maxGraphsInMemory - most files being parsed or solved at the same time
+     */
+    public BatchSolver(Supplier<? extends RobbingStrategy> strategyFactory, int threads, int maxGraphsInMemory) {
+        if (threads < 1 || maxGraphsInMemory < 1) {
+            throw new IllegalArgumentException("threads and maxGraphsInMemory must be positive");
+        }
+        this.strategyFactory = strategyFactory;
+        this.threads = threads;
+        this.maxGraphsInMemory = maxGraphsInMemory;
+    }
+
+    /** @return the number of files solved by the last {@link #solve} */
+    public int getSolvedCount() {
+        return solved.get();
+    }
+
+    /** @return the number of files that couldn't be read or solved in the last {@link #solve} */
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Lists the .graph files to solve: every .graph file in the directory (in name
+     * order), or the files named in the manifest.
+     */
+    public static List<String> listInputs(String directoryOrManifest) throws IOException {
+        File input = new File(directoryOrManifest);
+        List<String> files = new ArrayList<>();
+        if (input.isDirectory()) {
+            File[] graphs = input.listFiles((dir, name) -> name.endsWith(".graph"));
+            if (graphs == null) {
+                throw new IOException("Can't list directory: " + directoryOrManifest);
+            }
+            Arrays.sort(graphs);
+            for (File f : graphs) {
+                files.add(f.getPath());
+            }
+        } else {
+            File base = input.getAbsoluteFile().getParentFile();
+            for (String line : Files.readAllLines(input.toPath(), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("//")) continue;
+                File f = new File(line);
+                files.add((f.isAbsolute() ? f : new File(base, line)).getPath());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Solves all the files, writing one result line per file to outputFile, and
+     * returns once every file is done.
+     */
+    public void solve(List<String> files, String outputFile) throws IOException, InterruptedException {
+        solved.set(0);
+        failed.set(0);
+        boolean json = outputFile.endsWith(".jsonl");
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        Semaphore inMemory = new Semaphore(maxGraphsInMemory);
+        AtomicReference<IOException> writeError = new AtomicReference<>();
+
+        try (BufferedWriter out = Files.newBufferedWriter(new File(outputFile).toPath(), StandardCharsets.UTF_8)) {
+            if (!json) {
+                out.write("file,strategy,gold,parse_ms,solve_ms,order_hash,error");
+                out.newLine();
+                out.flush();
+            }
+            try {
+                for (String file : files) {
+                    inMemory.acquire();
+                    try {
+                        pool.execute(() -> {
+                            try {
+                                String line = solveOne(file, json);
+                                synchronized (out) {
+                                    out.write(line);
+                                    out.newLine();
+                                    out.flush();
+                                }
+                            } catch (IOException e) {
+                                writeError.compareAndSet(null, e);
+                            } finally {
+                                inMemory.release();
+                            }
+                        });
+                    } catch (RuntimeException e) {
+                        inMemory.release();
+                        throw e;
+                    }
+                }
+                // every task holds a permit until it's done
+                inMemory.acquire(maxGraphsInMemory);
+            } finally {
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (writeError.get() != null) {
+            throw writeError.get();
+        }
+    }
+
+    /**
+     * Parses and solves one file, returning its result line.
+     */
+    private String solveOne(String file, boolean json) {
+        RobbingStrategy strategy = strategyFactory.get();
+        String strategyName = strategy.getClass().getSimpleName();
+        long start = System.nanoTime();
+        double parseMillis = 0;
+        try {
+            LabeledValueGraph graph = new LabeledValueGraph(file);
+            parseMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            List<String> attackOrder = strategy.chooseOrderToAttack(graph);
+            double solveMillis = (System.nanoTime() - start) / 1e6;
+
+            // the strategies don't change the graph (they only freeze it), so it can be checked against directly
+            double gold = AttackValueVerifier.computeGoldForAttackOrdering(graph, attackOrder, false);
+            solved.incrementAndGet();
+            return format(json, file, strategyName, Double.toString(gold), parseMillis, solveMillis,
+                    String.format("%016x", orderHash(attackOrder)), "");
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            return format(json, file, strategyName, "", parseMillis, 0, "", e.toString());
+        }
+    }
+
+    /** 64-bit FNV-1a over the labels' UTF-8 bytes, each followed by a 0 byte. */
+    static long orderHash(List<String> attackOrder) {
+        long hash = 0xcbf29ce484222325L;
+        for (String label : attackOrder) {
+            for (byte b : label.getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String format(boolean json, String file, String strategy, String gold,
+                                 double parseMillis, double solveMillis, String orderHash, String error) {
+        if (json) {
+            return String.format(Locale.ROOT,
+                    "{\"file\":%s,\"strategy\":%s,\"gold\":%s,\"parse_ms\":%.3f,\"solve_ms\":%.3f,\"order_hash\":%s,\"error\":%s}",
+                    jsonString(file), jsonString(strategy), gold.isEmpty() ? "null" : gold, parseMillis, solveMillis,
+                    orderHash.isEmpty() ? "null" : jsonString(orderHash), error.isEmpty() ? "null" : jsonString(error));
+        }
+        return String.format(Locale.ROOT, "%s,%s,%s,%.3f,%.3f,%s,%s",
+                csvField(file), csvField(strategy), gold, parseMillis, solveMillis, orderHash, csvField(error));
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * @return a factory for the strategy with the given name: the class name with or
+     * without the "Strategy" suffix, in any case (e.g. "dp", "Greedy", "TreeDecomposition")
+     */
+    public static Supplier<? extends RobbingStrategy> strategyNamed(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        if (key.endsWith("strategy")) {
+            key = key.substring(0, key.length() - "strategy".length());
+        }
+        switch (key) {
+            case "dp": return DPStrategy::new;
+            case "greedy": return GreedyStrategy::new;
+            case "treedecomposition": return TreeDecompositionStrategy::new;
+            case "branchandbound": return BranchAndBoundStrategy::new;
+            case "bruteforce": return BruteForceStrategy::new;
+            case "subsetdp": return SubsetDPStrategy::new;
+            case "random": return RandomStrategy::new;
+            case "anytimesolver": return AnytimeSolver::new;
+            case "localsearch": return () -> new LocalSearchStrategy(new GreedyStrategy());
+            default: throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: BatchSolver <directory|manifest> <output.csv|output.jsonl>"
+                    + " [strategy [threads [maxGraphsInMemory]]]");
+            System.exit(2);
+        }
+        Supplier<? extends RobbingStrategy> factory = strategyNamed(args.length > 2 ? args[2] : "DP");
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int maxGraphs = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MAX_GRAPHS_IN_MEMORY;
+
+        List<String> files = listInputs(args[0]);
+        BatchSolver batch = new BatchSolver(factory, threads, maxGraphs);
+        long start = System.nanoTime();
+        batch.solve(files, args[1]);
+        System.out.printf("%d solved, %d failed in %.2f s -> %s%n", batch.getSolvedCount(), batch.getFailedCount(),
+                (System.nanoTime() - start) / 1e9, args[1]);
+    }
+}
@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An exact branch-and-bound search over attack orders.
+ * <p>
+ * Like BruteForceStrategy it extends a partial order one fort at a time, but
+ * it keeps the gold of the partial order as it goes and an admissible upper
+ * bound on what the remaining forts could still give (full gold for every fort
+ * not yet on alert, half otherwise -- alerts only ever spread, so no fort can
+ * do better than that).  Any branch whose partial gold plus bound can't beat
+ * the best order found so far is cut.  The search starts with GreedyStrategy's
+ * order as the incumbent, so good bounds are available right away.
+ * <p>
+ * Two forts that aren't neighbors can swap places in an order without
+ * changing its gold, so of all the orders that only differ by such swaps only
+ * one is explored: a fort may directly follow a non-neighbor only if it has
+ * the higher vertex id.  This doesn't lose any optimal order, but it removes
+ * the huge number of equivalent interleavings of independent forts.
+ * For the same reason each connected component is searched separately.
+ * <p>
+ * Optionally (see {@link #BranchAndBoundStrategy(ForkJoinPool, int)}) the
+ * search tree is split on its first one or two choices and the subtrees are
+ * searched on a work-stealing pool.  The incumbent is shared through a
+ * lock-free atomic reference, so an improvement found by one worker
+ * immediately tightens the pruning in all the others.  The value found is
+ * always the optimum; which of several equally good orders is returned can
+ * depend on thread timing.
+ * <p>
+ * As an {@link AnytimeStrategy} it reports the greedy order immediately and
+ * then every improvement (as an order for the whole graph), and if the budget
+ * runs out it stops and returns the best order found so far.
+ * <p>
+ * Gold values are whole or half numbers, so the double comparisons are exact.
+ * All search state lives in per-call objects, so an instance can be reused.
+ */
+public class BranchAndBoundStrategy implements AnytimeStrategy {
+
+    private final ForkJoinPool pool;
+    private final int splitDepth;
+
+    // statistics of the last call
+    private long nodesExpanded;
+    private long nodesPruned;
+
+    /**
+     * Creates the (default) single-threaded search.
+     */
+    public BranchAndBoundStrategy() {
+        this(null, 0);
+    }
+
+    /**
+     * Creates a parallel search.
+     *
+     * @param pool       - pool the subtrees are searched on (null means single-threaded)
+     * @param splitDepth - how many leading choices (1 or 2) are split into separate tasks
+     */
+    public BranchAndBoundStrategy(ForkJoinPool pool, int splitDepth) {
+        this.pool = pool;
+        this.splitDepth = Math.max(1, Math.min(2, splitDepth));
+    }
+
+    @Override
+    public List<String> chooseOrderToAttack(LabeledValueGraph graph, SearchBudget budget, Listener listener) {
+        LongAdder expanded = new LongAdder();
+        LongAdder pruned = new LongAdder();
+
+        // components are independent, so search each one on its own
+        ComponentDecomposition components = new ComponentDecomposition(graph);
+        int count = components.componentCount();
+        Progress progress = new Progress(count, listener);
+        Problem[] problems = new Problem[count];
+        for (int c = 0; c < count; c++) {
+            problems[c] = new Problem(count == 1 ? graph : components.subgraph(c, c + 1), budget);
+            progress.seed(c, problems[c]);
+        }
+        progress.report(); // the greedy answer, right away
+
+        for (int c = 0; c < count && !budget.isExpired(); c++) {
+            SplitTask root = new SplitTask(problems[c], progress.incumbents[c], new int[0], expanded, pruned);
+            if (pool == null) {
+                root.searchAll();
+            } else {
+                pool.invoke(root);
+            }
+        }
+
+        nodesExpanded = expanded.sum();
+        nodesPruned = pruned.sum();
+        return progress.attackOrder();
+    }
+
+    /** @return number of search nodes visited by the last call to chooseOrderToAttack */
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /** @return number of branches cut by the bound in the last call to chooseOrderToAttack */
+    public long getNodesPruned() {
+        return nodesPruned;
+    }
+
+    /**
+     * The read-only description of one component, shared by all workers.
+     */
+    private static final class Problem {
+        final LabeledValueGraph graph;
+        final int n;
+        final BitSet[] neighbors;
+        final SearchBudget budget;
+
+        Problem(LabeledValueGraph graph, SearchBudget budget) {
+            this.graph = graph.freeze();
+            this.budget = budget;
+            n = graph.vertexCount();
+            neighbors = new BitSet[n];
+            for (int v = 0; v < n; v++) {
+                neighbors[v] = new BitSet(n);
+                for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                    neighbors[v].set(graph.adjTarget(e));
+                }
+            }
+        }
+    }
+
+    /**
+     * Best order found so far, shared between workers without locks.
+     */
+    private static final class Incumbent {
+        private static final class Best {
+            final double value;
+            final int[] order;
+
+            Best(double value, int[] order) {
+                this.value = value;
+                this.order = order;
+            }
+        }
+
+        private final AtomicReference<Best> best;
+        private final Progress progress;
+        private final int component;
+
+        Incumbent(double value, int[] order, Progress progress, int component) {
+            best = new AtomicReference<>(new Best(value, order));
+            this.progress = progress;
+            this.component = component;
+        }
+
+        double value() {
+            return best.get().value;
+        }
+
+        int[] order() {
+            return best.get().order;
+        }
+
+        void offer(double value, AttackEvaluator evaluator) {
+            Best candidate = null;
+            while (true) {
+                Best current = best.get();
+                if (value <= current.value) {
+                    return;
+                }
+                if (candidate == null) {
+                    candidate = new Best(value, evaluator.currentOrder());
+                }
+                if (best.compareAndSet(current, candidate)) {
+                    progress.improved(component, value);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The best order of every component so far, so that improvements can be
+     * reported as orders for the whole graph.
+     */
+    private static final class Progress {
+        final Incumbent[] incumbents;
+        private final Problem[] problems;
+        private final double[] gold;  // last reported gold of each component
+        private final Listener listener;
+
+        Progress(int components, Listener listener) {
+            incumbents = new Incumbent[components];
+            problems = new Problem[components];
+            gold = new double[components];
+            this.listener = listener;
+        }
+
+        // start component c from the greedy answer
+        void seed(int c, Problem problem) {
+            List<String> greedyOrder = new GreedyStrategy().chooseOrderToAttack(problem.graph);
+            int[] seedOrder = new int[problem.n];
+            for (int i = 0; i < problem.n; i++) {
+                seedOrder[i] = problem.graph.indexOf(greedyOrder.get(i));
+            }
+            gold[c] = AttackValueVerifier.computeGoldForAttackOrdering(problem.graph, greedyOrder);
+            problems[c] = problem;
+            incumbents[c] = new Incumbent(gold[c], seedOrder, this, c);
+        }
+
+        // (called by the workers; synchronized so reports never overlap or go backwards)
+        synchronized void improved(int c, double value) {
+            if (value > gold[c]) {
+                gold[c] = value;
+                report();
+            }
+        }
+
+        synchronized void report() {
+            if (listener == Listener.NONE) {
+                return;
+            }
+            double total = 0;
+            for (double g : gold) {
+                total += g;
+            }
+            listener.improved(total, Collections.unmodifiableList(attackOrder()));
+        }
+
+        List<String> attackOrder() {
+            List<String> attackOrder = new ArrayList<>();
+            for (int c = 0; c < incumbents.length; c++) {
+                for (int v : incumbents[c].order()) {
+                    attackOrder.add(problems[c].graph.labelOf(v));
+                }
+            }
+            return attackOrder;
+        }
+    }
+
+    /**
+     * One depth-first search.  The partial order, its gold and the bound on
+     * the rest are all kept by an AttackEvaluator, which can undo each step.
+     */
+    private static final class Search {
+        final Problem p;
+        final Incumbent incumbent;
+        final AttackEvaluator evaluator;
+        long expanded;
+        long pruned;
+        boolean stopped;
+
+        Search(Problem p, Incumbent incumbent) {
+            this.p = p;
+            this.incumbent = incumbent;
+            evaluator = new AttackEvaluator(p.graph);
+        }
+
+        /** @return true if v may be attacked next */
+        boolean canFollow(int v) {
+            if (evaluator.isAttacked(v)) return false;
+            int previous = evaluator.last();
+            return v > previous || p.neighbors[previous].get(v); // otherwise equivalent to an order we do explore
+        }
+
+        /** @return true if the current partial order could still beat the incumbent */
+        boolean promising() {
+            return evaluator.total() + evaluator.remainingBound() > incumbent.value();
+        }
+
+        void search() {
+            expanded++;
+            if (evaluator.size() == p.n) {
+                incumbent.offer(evaluator.total(), evaluator);
+                return;
+            }
+            if ((expanded & 1023) == 0 && p.budget.isExpired()) {
+                stopped = true;
+            }
+            for (int v = 0; v < p.n && !stopped; v++) {
+                if (!canFollow(v)) continue;
+                evaluator.push(v);
+                if (promising()) {
+                    search();
+                } else {
+                    pruned++;
+                }
+                evaluator.pop();
+            }
+        }
+    }
+
+    /**
+     * Searches all orders starting with the given prefix.  While the prefix is
+     * shorter than the split depth, each possible next fort becomes its own task.
+     */
+    private final class SplitTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Problem problem;
+        private final Incumbent incumbent;
+        private final int[] prefix;
+        private final LongAdder expanded;
+        private final LongAdder pruned;
+
+        SplitTask(Problem problem, Incumbent incumbent, int[] prefix, LongAdder expanded, LongAdder pruned) {
+            this.problem = problem;
+            this.incumbent = incumbent;
+            this.prefix = prefix;
+            this.expanded = expanded;
+            this.pruned = pruned;
+        }
+
+        @Override
+        protected void compute() {
+            if (problem.budget.isExpired()) {
+                return;
+            }
+            Search search = new Search(problem, incumbent);
+            for (int v : prefix) {
+                search.evaluator.push(v);
+            }
+            if (prefix.length >= splitDepth || search.evaluator.size() == problem.n) {
+                search.search();
+            } else {
+                search.expanded++;
+                List<SplitTask> children = new ArrayList<>();
+                for (int v = 0; v < problem.n; v++) {
+                    if (!search.canFollow(v)) continue;
+                    search.evaluator.push(v);
+                    if (search.promising()) {
+                        int[] childPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+                        childPrefix[prefix.length] = v;
+                        children.add(new SplitTask(problem, incumbent, childPrefix, expanded, pruned));
+                    } else {
+                        search.pruned++;
+                    }
+                    search.evaluator.pop();
+                }
+                invokeAll(children);
+            }
+            expanded.add(search.expanded);
+            pruned.add(search.pruned);
+        }
+
+        /** Runs the whole search in the calling thread. */
+        void searchAll() {
+            Search search = new Search(problem, incumbent);
+            search.search();
+            expanded.add(search.expanded);
+            pruned.add(search.pruned);
+        }
+    }
+}
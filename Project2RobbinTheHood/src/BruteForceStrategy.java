@@ -6,24 +6,45 @@ import java.util.*;
 /**
  * An exhaustive search/backtracking strategy to select vertices for robbing.
  * (Basically: try every possible order and keep whatever makes the most gold.)
+ * <p>
+ * Since trying every order takes forever on anything but tiny graphs, it can
+ * also run on a budget (see {@link AnytimeStrategy}): every new best order is
+ * reported as it's found, and once time is up the best one so far is returned.
  */
-public class BruteForceStrategy implements RobbingStrategy {
+public class BruteForceStrategy implements AnytimeStrategy {
 
     // Keep track of the best attack order we’ve found so far
     // Starts off empty and gets replaced as we find better ones.
     List<String> bestOrderingFound = new ArrayList<>();
     double bestValueFound = Double.NEGATIVE_INFINITY;
 
+    // When to stop early, and who to tell about better orders
+    private SearchBudget budget;
+    private Listener listener;
+    private boolean stopped;
+    private long permutationsTried; // (for Metrics)
+
     @Override
-    public List<String> chooseOrderToAttack(LabeledValueGraph graph) {
+    public List<String> chooseOrderToAttack(LabeledValueGraph graph, SearchBudget budget, Listener listener) {
+
+        // Start fresh every call, so the same instance can be reused
+        bestOrderingFound = new ArrayList<>();
+        bestValueFound = Double.NEGATIVE_INFINITY;
+        this.budget = budget;
+        this.listener = listener;
+        stopped = false;
 
         List<String> allVertexLabels = graph.getAllVertexLabels();
         List<String> chosen = new ArrayList<>(); // our current partial ordering while we recurse
 
         // Kick off the recursive brute-force search
+        long start = Metrics.startTimer();
+        permutationsTried = 0;
         tryAllPermutations(graph, allVertexLabels, chosen);
+        Metrics.add(Metrics.Counter.BRUTE_FORCE_PERMUTATIONS, permutationsTried);
+        Metrics.stopTimer(Metrics.Phase.SOLVE, start);
 
-        // After trying literally everything, we return whatever gave the most gold
+        // After trying literally everything (or running out of time), we return whatever gave the most gold
         return bestOrderingFound;
     }
 
@@ -35,18 +56,25 @@ public class BruteForceStrategy implements RobbingStrategy {
         if (remainingVertexLabels.isEmpty()) {
 
             // Compute how much gold this exact ordering earns
+            permutationsTried++;
             double chosenValue = AttackValueVerifier.computeGoldForAttackOrdering(graph, chosen);
 
             // Update “best” if this one beats what we had
             if (chosenValue > bestValueFound) {
                 bestValueFound = chosenValue;
                 bestOrderingFound = new ArrayList<>(chosen); // copy it so it doesn’t mutate later
+                listener.improved(bestValueFound, Collections.unmodifiableList(bestOrderingFound));
+            }
+
+            // Out of time? Then stop here (we always have at least one full order by now)
+            if (budget.isExpired()) {
+                stopped = true;
             }
 
         } else {
 
             // Try each remaining vertex one-by-one in the next slot of the ordering
-            for (int i = 0; i < remainingVertexLabels.size(); i++) {
+            for (int i = 0; i < remainingVertexLabels.size() && !stopped; i++) {
 
                 // Pick a vertex
                 String chosenLabel = remainingVertexLabels.remove(i);
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps another strategy and remembers its answers for tree components, so a
+ * tree that has already been solved (the same shape, values and flags, under
+ * any labels) is never solved again.
+ * <p>
+ * Each component is looked up by its canonical form (see
+ * {@link TreeCanonicalForm}).  On a hit, the cached order of canonical fort
+ * numbers is mapped back to this component's forts.  On a miss, the wrapped
+ * strategy solves the component on its own and the result is added to the
+ * cache.  Components with cycles aren't cached, they're just passed through.
+ * Alerts never cross components, so the gold is the same as solving the
+ * whole graph with the wrapped strategy one component at a time.
+ * <p>
+ * Canonicalizing a tree costs about as much as DPStrategy solving it, so this
+ * pays off in front of the slower strategies (TreeDecomposition,
+ * BranchAndBound, ...) or across runs, not in front of DPStrategy itself.
+ * <p>
+ * The cache can be shared between calls and threads, and saved to disk and
+ * loaded again (see {@link SolutionCache#save} / {@link SolutionCache#load}) so
+ * repeated runs skip components they've already seen.
+ */
+public class CachingStrategy implements RobbingStrategy {
+
+    private final RobbingStrategy strategy;
+    private final SolutionCache cache;
+
+    /**
+     * @param strategy - solves the components that aren't in the cache yet
+     */
+    public CachingStrategy(RobbingStrategy strategy) {
+        this(strategy, new SolutionCache(SolutionCache.DEFAULT_MAX_VERTICES));
+    }
+
+    /**
+     * @param strategy - solves the components that aren't in the cache yet
+     * @param cache    - where solved trees are kept (only fill it from one kind of strategy)
+     */
+    public CachingStrategy(RobbingStrategy strategy, SolutionCache cache) {
+        this.strategy = strategy;
+        this.cache = cache;
+    }
+
+    public SolutionCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public List<String> chooseOrderToAttack(LabeledValueGraph graph) {
+        ComponentDecomposition components = new ComponentDecomposition(graph);
+        List<String> attackOrder = new ArrayList<>(graph.vertexCount());
+
+        for (int c = 0; c < components.componentCount(); c++) {
+            if (!TreeCanonicalForm.isTree(components, c)) {
+                attackOrder.addAll(strategy.chooseOrderToAttack(components.subgraph(c, c + 1)));
+                continue;
+            }
+
+            TreeCanonicalForm form = TreeCanonicalForm.of(components, c);
+            int[] order = cache.get(form.code);
+            if (order == null) {
+                order = solve(components, c, form);
+                cache.put(form.code, order);
+            }
+            for (int i : order) {
+                attackOrder.add(graph.labelOf(form.vertexAt[i]));
+            }
+        }
+        return attackOrder;
+    }
+
+    // solves component c with the wrapped strategy, as canonical fort numbers
+    private int[] solve(ComponentDecomposition components, int c, TreeCanonicalForm form) {
+        int size = components.componentSize(c);
+        int[] canonicalIndex = new int[size]; // by position within the component
+        for (int i = 0; i < size; i++) {
+            canonicalIndex[components.indexInComponent(form.vertexAt[i])] = i;
+        }
+
+        LabeledValueGraph component = components.subgraph(c, c + 1);
+        List<String> solved = strategy.chooseOrderToAttack(component);
+        int[] order = new int[solved.size()];
+        for (int i = 0; i < order.length; i++) {
+            // vertex j of the subgraph is member j of the component
+            order[i] = canonicalIndex[component.indexOf(solved.get(i))];
+        }
+        return order;
+    }
+}
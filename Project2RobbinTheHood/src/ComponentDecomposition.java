@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+ * Splits a graph into its connected components.  Alerts never cross
+ * component boundaries, so each component is an independent subproblem.
+ * <p>
+ * Components are numbered in order of their lowest vertex id, and the
+ * vertices of each component are kept in increasing id order, so solving the
+ * components one after another visits vertices in the same order as solving
+ * the whole graph would.
+ */
+public class ComponentDecomposition {
+    private final LabeledValueGraph graph;
+    private final int[] componentOf;    // component number of each vertex
+    private final int[] members;        // vertex ids grouped by component
+    private final int[] componentStart; // members of component c are members[componentStart[c] .. componentStart[c+1])
+    private final int[] position;       // position[v] = index of v in members
+
+    /**
+     * @param graph - the graph to decompose (it is frozen if it isn't already)
+     */
+    public ComponentDecomposition(LabeledValueGraph graph) {
+        long start = Metrics.startTimer();
+        this.graph = graph.freeze();
+        int n = graph.vertexCount();
+        componentOf = new int[n];
+        Arrays.fill(componentOf, -1);
+
+        // label the components with a BFS from each not-yet-labeled vertex
+        int[] queue = new int[n];
+        int count = 0;
+        for (int root = 0; root < n; root++) {
+            if (componentOf[root] >= 0) continue;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = root;
+            componentOf[root] = count;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                    int w = graph.adjTarget(e);
+                    if (componentOf[w] < 0) {
+                        componentOf[w] = count;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            count++;
+        }
+
+        // counting sort by component keeps the vertices in id order within each component
+        componentStart = new int[count + 1];
+        for (int v = 0; v < n; v++) {
+            componentStart[componentOf[v] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            componentStart[c + 1] += componentStart[c];
+        }
+        members = queue; // reuse the BFS queue
+        position = new int[n];
+        int[] fill = new int[count];
+        for (int v = 0; v < n; v++) {
+            int c = componentOf[v];
+            int pos = componentStart[c] + fill[c]++;
+            members[pos] = v;
+            position[v] = pos;
+        }
+        Metrics.stopTimer(Metrics.Phase.DECOMPOSE, start);
+    }
+
+    public LabeledValueGraph getGraph() {
+        return graph;
+    }
+
+    public int componentCount() {
+        return componentStart.length - 1;
+    }
+
+    /** @return the component number of vertex v */
+    public int componentOf(int v) {
+        return componentOf[v];
+    }
+
+    /** @return the number of vertices in component c */
+    public int componentSize(int c) {
+        return componentStart[c + 1] - componentStart[c];
+    }
+
+    /** @return the i-th vertex id (in increasing id order) of component c */
+    public int member(int c, int i) {
+        return members[componentStart[c] + i];
+    }
+
+    /** @return i such that member(componentOf(v), i) == v */
+    public int indexInComponent(int v) {
+        return position[v] - componentStart[componentOf[v]];
+    }
+
+    /**
+     * Builds a standalone (frozen) graph holding components fromComponent
+     * (inclusive) through toComponent (exclusive).  Vertex order and the
+     * order of each vertex's neighbors are the same as in the original graph.
+     */
+    public LabeledValueGraph subgraph(int fromComponent, int toComponent) {
+        int start = componentStart[fromComponent];
+        int n = componentStart[toComponent] - start;
+        String[] labels = new String[n];
+        int[] values = new int[n];
+        byte[] flags = new byte[n];
+        int[] adjOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            int v = members[start + i];
+            labels[i] = graph.labelOf(v);
+            values[i] = graph.valueOf(v);
+            flags[i] = graph.flagsOf(v);
+            adjOffsets[i + 1] = adjOffsets[i] + graph.degree(v);
+        }
+        int[] adjTargets = new int[adjOffsets[n]];
+        int e2 = 0;
+        for (int i = 0; i < n; i++) {
+            int v = members[start + i];
+            for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                // components are closed under adjacency, so every neighbor is in range
+                adjTargets[e2++] = position[graph.adjTarget(e)] - start;
+            }
+        }
+        return new LabeledValueGraph(labels, values, flags, adjOffsets, adjTargets);
+    }
+}
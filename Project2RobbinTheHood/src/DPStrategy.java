@@ -1,4 +1,6 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 //EDEN SUH
 //10-5-25
 //CODEX AI USED
@@ -8,90 +10,367 @@ import java.util.*;
  * Dynamic-programming strategy for picking the best order to rob forts.
  * Basically: treat the graph like a forest, run DFS, and at each fort decide
  * “should the kids go before me or after me?” while keeping track of alert rules.
+ * Edges that close a cycle are skipped by the DFS, so on graphs with cycles the
+ * order is still valid but may not be the best; TreeDecompositionStrategy is
+ * exact there.
+ * <p>
+ * Only scalar values are kept per node (best gold when the node starts
+ * unalerted / alerted) plus a tiny decision record per child saying whether it
+ * went before or after its parent.  The actual attack order is rebuilt in one
+ * linear pass at the end by following those decision records, instead of
+ * copying partial orders around during the DP.  {@link #attackOrderIds} does
+ * that pass lazily, one fort id per step, so the order can be streamed out
+ * without ever building the List.
+ * <p>
+ * Both the DFS and the reconstruction run off explicit stacks, so arbitrarily
+ * deep trees (e.g. million-fort chains) work with the default thread stack
+ * size, including on virtual threads.
+ * <p>
+ * Optionally (see {@link #DPStrategy(ForkJoinPool, int)}) the DP values of
+ * big subtrees are computed in parallel as fork-join tasks.  Only children
+ * need to be finished before a parent's merge, so every "light" child whose
+ * subtree has at least {@code parallelThreshold} forts is forked off, while the
+ * heaviest child is always walked inline.  That keeps the nesting of tasks
+ * logarithmic even on long chains.
+ * <p>
+ * Given a {@link SolverWorkspace} (see {@link #DPStrategy(SolverWorkspace)}),
+ * the per-node tables come from it and are reused by the next call, so
+ * solving graph after graph only allocates the returned list.
  */
 public class DPStrategy implements RobbingStrategy {
 
+    private static final int UNVISITED = -2;
+    private static final int NO_PARENT = -1;
+
+    // options recorded for each child
+    private static final int BEFORE = 0;
+    private static final int AFTER = 1;
+
+    // decision record layout (one byte per child): for each partition state key k
+    // (k = "parent already alerted by a before-child"), bits 3k..3k+2 hold
+    // [state exists, option taken for this child, key of the previous state].
+    // Bit 6 is scratch space used during reconstruction for the chosen option.
+    private static final int CHOSEN_BIT = 6;
+
+    // reconstruction stack entries are (vertex << 2 | type)
+    private static final int EMIT_UNALERTED = 0;
+    private static final int EMIT_ALERTED = 1;
+    private static final int OUTPUT = 2;
+
+    // SolverWorkspace slots (numbered separately for each array type)
+    private static final int PARENT = 0;
+    private static final int CURSOR = 1;
+    private static final int STACK = 2;
+    private static final int SIZE = 3;
+    private static final int HEAVY = 4;
+    private static final int NO_ALERT = 0;
+    private static final int ALERT = 1;
+    private static final int DECISION = 0;
+    private static final int FINAL_KEY = 1;
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final SolverWorkspace workspace;
+
+    /**
+     * Creates the (default) sequential DP strategy.
+     */
+    public DPStrategy() {
+        this(null, 0);
+    }
+
+    /**
+     * Creates a sequential DP strategy that keeps its tables in the given
+     * workspace between calls.
+     *
+     * @param workspace - where to keep the tables (null means allocate them every
+     *                  call); only one call at a time may use it
+     */
+    public DPStrategy(SolverWorkspace workspace) {
+        this(null, 0, workspace);
+    }
+
+    /**
+     * Creates a DP strategy that evaluates big subtrees in parallel.
+     *
+     * @param pool              - pool used for the subtree tasks (null means sequential)
+     * @param parallelThreshold - subtrees smaller than this are always done sequentially
+     */
+    public DPStrategy(ForkJoinPool pool, int parallelThreshold) {
+        this(pool, parallelThreshold, null);
+    }
+
+    private DPStrategy(ForkJoinPool pool, int parallelThreshold, SolverWorkspace workspace) {
+        this.pool = pool;
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+        this.workspace = workspace;
+    }
+
     @Override
     public List<String> chooseOrderToAttack(LabeledValueGraph graph) {
-        List<String> attackOrder = new ArrayList<>();
-        Set<String> visited = new HashSet<>();
+        graph.freeze();
+        if (pool != null) {
+            return chooseOrderInParallel(graph);
+        }
+        Tables t = new Tables(graph, false, workspace);
+        List<String> attackOrder = new ArrayList<>(t.n);
+        OrderCursor cursor = new OrderCursor(t, 0, 0);
+        boolean timed = Metrics.isEnabled();
+        long solveNanos = 0;
+        long reconstructNanos = 0;
 
         // The graph can have multiple components, so hit each root once.
-        for (String root : graph.getAllVertexLabels()) {
-            if (visited.contains(root)) continue;
+        for (int root = 0; root < t.n; root++) {
+            if (t.parent[root] != UNVISITED) continue;
 
-            // DFS returns the DP results for that whole subtree.
-            NodeDP dp = dfs(root, null, graph, visited);
+            // DFS fills in the DP values for that whole subtree.
+            long start = timed ? System.nanoTime() : 0;
+            dfs(root, t);
+            long middle = timed ? System.nanoTime() : 0;
 
             // We want the “not already alerted” version at the root.
-            attackOrder.addAll(dp.bestNoAlertOrder);
+            cursor.restart(root, root + 1);
+            appendOrder(cursor, attackOrder);
+            if (timed) {
+                solveNanos += middle - start;
+                reconstructNanos += System.nanoTime() - middle;
+            }
         }
 
+        Metrics.record(Metrics.Phase.SOLVE, solveNanos);
+        Metrics.record(Metrics.Phase.RECONSTRUCT, reconstructNanos);
         return attackOrder;
     }
 
     /**
-     * Holds all the per-node DP info.
+     * Runs the DP up front, then walks the decision records only as the
+     * returned iterator is advanced, so no List (and no label lookup) is
+     * needed.  With a workspace the iterator reads the workspace's tables,
+     * so it's only good until the next call that uses the same workspace.
      */
-    private static class NodeDP {
-        final String label;
-        final boolean hasShield;  // shield fort doesn’t alert neighbors
-        final boolean immune;     // immune fort alerts don’t half its gold
-        final boolean selfAlert;  // self-alert always triggers alert on itself
-        double bestNoAlertValue;
-        List<String> bestNoAlertOrder;
-        double bestAlertValue;
-        List<String> bestAlertOrder;
+    @Override
+    public PrimitiveIterator.OfInt attackOrderIds(LabeledValueGraph graph) {
+        graph.freeze();
+        Tables t = new Tables(graph, pool != null, workspace);
+        if (pool != null) {
+            solveInParallel(t);
+        } else {
+            long start = Metrics.startTimer();
+            for (int root = 0; root < t.n; root++) {
+                if (t.parent[root] == UNVISITED) {
+                    dfs(root, t);
+                }
+            }
+            Metrics.stopTimer(Metrics.Phase.SOLVE, start);
+        }
+        return new OrderCursor(t, 0, t.n);
+    }
 
-        NodeDP(String label) {
-            this.label = label;
-            // Decode the magic symbols from the project spec
-            this.hasShield = label.contains("" + (char) (AttackValueVerifier.obfuscated[2] >> 1));
-            this.immune    = label.contains("" + (char) (AttackValueVerifier.obfuscated[1] << 1));
-            this.selfAlert = label.contains("" + (char) (AttackValueVerifier.obfuscated[0] >> 1));
+    /**
+     * All the per-node DP info, stored in flat arrays indexed by vertex id.
+     * (Workspace arrays can be longer than n; only the first n entries are used.)
+     */
+    private static class Tables {
+        final LabeledValueGraph graph;
+        final int n;
+        final int[] parent;       // DFS parent, UNVISITED or NO_PARENT
+        final double[] noAlert;   // best gold for the subtree if the node starts unalerted
+        final double[] alert;     // best gold for the subtree if the node starts alerted
+        final byte[] decision;    // decision record for the edge to the parent
+        final byte[] finalKey;    // bit a = which partition state won for initial alert a
+        final int[] cursor;       // DFS: next adjacency index to look at for each node
+        final int[] stack;        // explicit stack shared by the DFS and the reconstruction
+        final int[] size;         // parallel mode only: number of forts in each subtree
+        final int[] heavy;        // parallel mode only: child with the biggest subtree (or -1)
+
+        // scratch partition states for the (sequential) merge step, indexed by key
+        final double[] stateValue = new double[2];
+        final double[] nextValue = new double[2];
+
+        Tables(LabeledValueGraph graph, boolean parallel, SolverWorkspace workspace) {
+            this.graph = graph;
+            this.n = graph.vertexCount();
+            SolverWorkspace ws = workspace != null ? workspace : new SolverWorkspace();
+            parent = ws.ints(PARENT, n);
+            Arrays.fill(parent, 0, n, UNVISITED);
+            noAlert = ws.doubles(NO_ALERT, n);
+            alert = ws.doubles(ALERT, n);
+            decision = ws.bytes(DECISION, n);
+            finalKey = ws.bytes(FINAL_KEY, n);
+            cursor = ws.ints(CURSOR, n);
+            stack = ws.ints(STACK, 2 * n);
+            size = parallel ? ws.ints(SIZE, n) : null;
+            heavy = parallel ? ws.ints(HEAVY, n) : null;
+            if (parallel) {
+                Arrays.fill(size, 0, n, 0);
+            }
         }
     }
 
     /**
-     * Standard DFS over the tree. For each node, gather its children’s DP data
-     * and compute our DP (best before/after orders for alerted / not alerted).
+     * Standard DFS over the tree, driven by an explicit stack so the depth of
+     * the tree doesn't matter. Children get their DP values first (post-order),
+     * then we merge them into ours.
      */
-    private NodeDP dfs(String label, String parent, LabeledValueGraph graph, Set<String> visited) {
-        visited.add(label);
-        NodeDP current = new NodeDP(label);
+    private void dfs(int root, Tables t) {
+        LabeledValueGraph graph = t.graph;
+        int[] stack = t.stack;
+        int top = 0;
+        t.parent[root] = NO_PARENT;
+        t.cursor[root] = graph.adjStart(root);
+        stack[top++] = root;
+
+        while (top > 0) {
+            int v = stack[top - 1];
+            if (t.cursor[v] < graph.adjEnd(v)) {
+                int child = graph.adjTarget(t.cursor[v]++);
+                if (t.parent[child] != UNVISITED) continue; // parent, or safety in case of weird input
+                t.parent[child] = v;
+                t.cursor[child] = graph.adjStart(child);
+                stack[top++] = child;
+            } else {
+                // all children are done
+                merge(v, t, t.stateValue, t.nextValue);
+                top--;
+            }
+        }
+    }
+
+    private List<String> chooseOrderInParallel(LabeledValueGraph graph) {
+        Tables t = new Tables(graph, true, workspace);
+        List<String> attackOrder = new ArrayList<>(t.n);
+        solveInParallel(t);
+        appendOrder(new OrderCursor(t, 0, t.n), attackOrder);
+        return attackOrder;
+    }
 
-        List<NodeDP> children = new ArrayList<>();
-        for (String neighbor : graph.getAdjacentVertices(label)) {
-            if (neighbor.equals(parent)) continue;
-            if (visited.contains(neighbor)) continue; // safety in case of weird input
-            children.add(dfs(neighbor, label, graph, visited));
+    private void solveInParallel(Tables t) {
+        // First a quick sequential pass to find parents and subtree sizes,
+        // then the DP values (the expensive part) in parallel.
+        for (int root = 0; root < t.n; root++) {
+            if (t.parent[root] == UNVISITED) {
+                buildTree(root, t);
+            }
         }
+        for (int root = 0; root < t.n; root++) {
+            if (t.parent[root] != NO_PARENT) continue;
+            SubtreeTask task = new SubtreeTask(root, t);
+            if (t.size[root] >= parallelThreshold) {
+                pool.invoke(task);
+            } else {
+                task.solve();
+            }
+        }
+    }
 
-        computeBestOrders(current, children, graph);
-        return current;
+    /**
+     * Same traversal as dfs, but only records parents, subtree sizes and the
+     * heaviest child of each node.
+     */
+    private void buildTree(int root, Tables t) {
+        LabeledValueGraph graph = t.graph;
+        int[] stack = t.stack;
+        int top = 0;
+        t.parent[root] = NO_PARENT;
+        t.cursor[root] = graph.adjStart(root);
+        t.heavy[root] = -1;
+        stack[top++] = root;
+
+        while (top > 0) {
+            int v = stack[top - 1];
+            if (t.cursor[v] < graph.adjEnd(v)) {
+                int child = graph.adjTarget(t.cursor[v]++);
+                if (t.parent[child] != UNVISITED) continue;
+                t.parent[child] = v;
+                t.cursor[child] = graph.adjStart(child);
+                t.heavy[child] = -1;
+                stack[top++] = child;
+            } else {
+                t.size[v]++;
+                int p = t.parent[v];
+                if (p >= 0) {
+                    t.size[p] += t.size[v];
+                    if (t.heavy[p] < 0 || t.size[v] > t.size[t.heavy[p]]) {
+                        t.heavy[p] = v;
+                    }
+                }
+                top--;
+            }
+        }
     }
 
     /**
-     * Fills in the 2 DP states: (1) root is NOT initially alerted (2) root IS initially alerted.
+     * Computes the DP values for one subtree.  Light children with big
+     * subtrees are forked off as their own tasks and joined right before
+     * their parent's merge; everything else is walked inline.
      */
-    private void computeBestOrders(NodeDP node, List<NodeDP> children, LabeledValueGraph graph) {
-        // root starts unalerted
-        OrderResult noAlert = computeBestOrderForInitialAlert(node, children, false, graph);
-        node.bestNoAlertOrder = noAlert.order;
-        node.bestNoAlertValue = noAlert.value;
+    private class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-        // root starts already alerted
-        OrderResult yesAlert = computeBestOrderForInitialAlert(node, children, true, graph);
-        node.bestAlertOrder = yesAlert.order;
-        node.bestAlertValue = yesAlert.value;
-    }
+        private final int root;
+        private final Tables t;
+
+        SubtreeTask(int root, Tables t) {
+            this.root = root;
+            this.t = t;
+        }
+
+        @Override
+        protected void compute() {
+            solve();
+        }
+
+        void solve() {
+            LabeledValueGraph graph = t.graph;
+            double[] state = new double[2];
+            double[] next = new double[2];
+            List<SubtreeTask> forked = new ArrayList<>();
+            int[] stack = new int[64];
+            int[] forkMark = new int[64]; // forked.size() when each stack entry was pushed
+            int top = 0;
+
+            stack[top] = root;
+            forkMark[top++] = forked.size();
+            forkBigLightChildren(root, forked);
+
+            while (top > 0) {
+                int v = stack[top - 1];
+                if (t.cursor[v] < graph.adjEnd(v)) {
+                    int child = graph.adjTarget(t.cursor[v]++);
+                    if (t.parent[child] != v || isForked(child)) continue;
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                        forkMark = Arrays.copyOf(forkMark, 2 * top);
+                    }
+                    stack[top] = child;
+                    forkMark[top++] = forked.size();
+                    forkBigLightChildren(child, forked);
+                } else {
+                    // wait for the children that went off to other workers
+                    while (forked.size() > forkMark[top - 1]) {
+                        forked.remove(forked.size() - 1).join();
+                    }
+                    merge(v, t, state, next);
+                    top--;
+                }
+            }
+        }
+
+        private void forkBigLightChildren(int v, List<SubtreeTask> forked) {
+            LabeledValueGraph graph = t.graph;
+            t.cursor[v] = graph.adjStart(v);
+            for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                int child = graph.adjTarget(e);
+                if (t.parent[child] == v && isForked(child)) {
+                    SubtreeTask task = new SubtreeTask(child, t);
+                    task.fork();
+                    forked.add(task);
+                }
+            }
+        }
 
-    private static class OrderResult {
-        final List<String> order; // actual attack sequence
-        final double value;       // total gold we get for that order
-        OrderResult(List<String> order, double value) {
-            this.order = order;
-            this.value = value;
+        private boolean isForked(int child) {
+            return t.size[child] >= parallelThreshold && t.heavy[t.parent[child]] != child;
         }
     }
 
@@ -101,153 +380,220 @@ public class DPStrategy implements RobbingStrategy {
      *    - some that go AFTER parent
      *
      * And we track whether any before-parent child would alert the parent.
-     * This is the DP merge step.
+     * We only keep ONE state for “alerted by a before-child” and ONE for
+     * “not alerted”, and a new candidate replaces the existing one only if it is
+     * strictly better.  The partitioning doesn't depend on whether the parent
+     * starts alerted, so it is done once and both DP values are read off the end.
      */
-    private OrderResult computeBestOrderForInitialAlert(NodeDP node, List<NodeDP> children,
-                                                        boolean initialAlert, LabeledValueGraph graph) {
-
-        // Start with one empty partition no children assigned yet.
-        List<PartitionState> states = new ArrayList<>();
-        states.add(PartitionState.empty());
-
-        // Process each child one at a time
-        for (NodeDP child : children) {
-            List<PartitionState> nextStates = new ArrayList<>();
-
-            for (PartitionState state : states) {
-
-                // Option 1 child goes BEFORE the parent
-                boolean alertedByChild = state.alertedBeforeParent || !child.hasShield;
-                double beforeValue = state.beforeValue + child.bestNoAlertValue;
-
-                List<String> beforeOrder = new ArrayList<>(state.beforeOrder);
-                beforeOrder.addAll(child.bestNoAlertOrder);
-
-                PartitionState beforeState = new PartitionState(
-                        alertedByChild,
-                        beforeValue,
-                        beforeOrder,
-                        state.afterValue,
-                        new ArrayList<>(state.afterOrder)
-                );
-                nextStates = chooseBetter(nextStates, beforeState);
+    private void merge(int v, Tables t, double[] state, double[] next) {
+        LabeledValueGraph graph = t.graph;
+        boolean parentShield = (graph.flagsOf(v) & LabeledValueGraph.SHIELD) != 0;
+
+        // Start with one empty partition, no children assigned yet.
+        state[0] = 0.0;
+        int exists = 1;  // bit k set if the state with key k exists
+        int first = 0;   // key of the state that was created first (ties go to it)
+        int created = 1; // (for Metrics)
+        int merged = 0;
+
+        for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+            int child = graph.adjTarget(e);
+            if (t.parent[child] != v) continue;
+
+            boolean childShield = (graph.flagsOf(child) & LabeledValueGraph.SHIELD) != 0;
+            int nextExists = 0;
+            int nextFirst = -1;
+            int record = 0;
+
+            for (int i = 0; i < 2; i++) {
+                int key = (i == 0) ? first : 1 - first;
+                if ((exists & (1 << key)) == 0) continue;
+
+                // Option 1: child goes BEFORE the parent
+                int beforeKey = (key == 1 || !childShield) ? 1 : 0;
+                double beforeValue = state[key] + t.noAlert[child];
+                if ((nextExists & (1 << beforeKey)) == 0 || beforeValue > next[beforeKey]) {
+                    if ((nextExists & (1 << beforeKey)) == 0 && nextFirst < 0) nextFirst = beforeKey;
+                    nextExists |= 1 << beforeKey;
+                    next[beforeKey] = beforeValue;
+                    record = withChoice(record, beforeKey, BEFORE, key);
+                }
 
                 // Option 2: child goes AFTER the parent
                 // If the parent has a shield child won’t be alerted. Otherwise use the child’s alert DP state
-                double afterValue = state.afterValue + (node.hasShield ? child.bestNoAlertValue : child.bestAlertValue);
-
-                List<String> afterOrder = new ArrayList<>(state.afterOrder);
-                afterOrder.addAll(node.hasShield ? child.bestNoAlertOrder : child.bestAlertOrder);
-
-                PartitionState afterState = new PartitionState(
-                        state.alertedBeforeParent,
-                        state.beforeValue,
-                        new ArrayList<>(state.beforeOrder),
-                        afterValue,
-                        afterOrder
-                );
-                nextStates = chooseBetter(nextStates, afterState);
+                double afterValue = state[key] + (parentShield ? t.noAlert[child] : t.alert[child]);
+                if ((nextExists & (1 << key)) == 0 || afterValue > next[key]) {
+                    if ((nextExists & (1 << key)) == 0 && nextFirst < 0) nextFirst = key;
+                    nextExists |= 1 << key;
+                    next[key] = afterValue;
+                    record = withChoice(record, key, AFTER, key);
+                }
             }
 
-            states = nextStates;
+            state[0] = next[0];
+            state[1] = next[1];
+            merged += Integer.bitCount(exists);
+            created += Integer.bitCount(nextExists);
+            exists = nextExists;
+            first = nextFirst;
+            t.decision[child] = (byte) record;
         }
 
         // Now that all children are assigned decide how the parent behaves
-        OrderResult bestResult = null;
-        for (PartitionState state : states) {
-
-            // Parent is alerted if initial alert or self-alert or any before child alerted it
-            boolean alertAtNode = initialAlert || node.selfAlert || state.alertedBeforeParent;
-
-            double parentGold = computeGold(node.label, alertAtNode, node.immune, graph);
-            double total = state.beforeValue + parentGold + state.afterValue;
-
-            // Build final ordering
-            List<String> ordering = new ArrayList<>(state.beforeOrder);
-            ordering.add(node.label);
-            ordering.addAll(state.afterOrder);
-
-            if (bestResult == null || total > bestResult.value) {
-                bestResult = new OrderResult(ordering, total);
+        byte flags = graph.flagsOf(v);
+        boolean selfAlert = (flags & LabeledValueGraph.SELF_ALERT) != 0;
+        boolean immune = (flags & LabeledValueGraph.IMMUNE) != 0;
+        int finalKey = 0;
+        for (int initialAlert = 0; initialAlert < 2; initialAlert++) {
+            double best = 0.0;
+            int bestKey = -1;
+            for (int i = 0; i < 2; i++) {
+                int key = (i == 0) ? first : 1 - first;
+                if ((exists & (1 << key)) == 0) continue;
+
+                // Parent is alerted if initial alert or self-alert or any before child alerted it
+                boolean alertAtNode = initialAlert == 1 || selfAlert || key == 1;
+                double total = state[key] + computeGold(graph.valueOf(v), alertAtNode, immune);
+                if (bestKey < 0 || total > best) {
+                    best = total;
+                    bestKey = key;
+                }
+            }
+            if (initialAlert == 0) {
+                t.noAlert[v] = best;
+            } else {
+                t.alert[v] = best;
             }
+            finalKey |= bestKey << initialAlert;
         }
-
-        // Safety fallback leaf node
-        if (bestResult == null) {
-            return new OrderResult(
-                    Collections.singletonList(node.label),
-                    computeGold(node.label, initialAlert || node.selfAlert, node.immune, graph)
-            );
+        t.finalKey[v] = (byte) finalKey;
+        if (Metrics.isEnabled()) {
+            Metrics.add(Metrics.Counter.DP_STATES_CREATED, created);
+            Metrics.add(Metrics.Counter.DP_STATES_MERGED, merged);
         }
+    }
 
-        return bestResult;
+    private static int withChoice(int record, int key, int option, int previousKey) {
+        int shift = 3 * key;
+        record &= ~(7 << shift);
+        return record | ((1 | option << 1 | previousKey << 2) << shift);
     }
 
     /**
      * Basic gold computation. If the fort is alerted and NOT immune → half gold.
      */
-    private double computeGold(String label, boolean alerted, boolean immune, LabeledValueGraph graph) {
-        double gold = graph.getValueAt(label);
+    private double computeGold(int value, boolean alerted, boolean immune) {
+        double gold = value;
         if (alerted && !immune) gold /= 2.0;
         return gold;
     }
 
     /**
-     * A partition of children into “before parent” and “after parent”.
-     * We only track:
-     *   - whether parent gets alerted by these before-children
-     *   - sum of gold before and after
-     *   - the corresponding orders
+     * Rebuilds the best order for the cursor's trees (whose roots start
+     * unalerted) by following the decision records, as labels.
      */
-    private static class PartitionState {
-        final boolean alertedBeforeParent;
-        final double beforeValue;
-        final List<String> beforeOrder;
-        final double afterValue;
-        final List<String> afterOrder;
+    private void appendOrder(OrderCursor cursor, List<String> out) {
+        LabeledValueGraph graph = cursor.t.graph;
+        while (cursor.hasNext()) {
+            out.add(graph.labelOf(cursor.nextInt()));
+        }
+    }
 
-        PartitionState(boolean alertedBeforeParent, double beforeValue, List<String> beforeOrder,
-                       double afterValue, List<String> afterOrder) {
-            this.alertedBeforeParent = alertedBeforeParent;
-            this.beforeValue = beforeValue;
-            this.beforeOrder = beforeOrder;
-            this.afterValue = afterValue;
-            this.afterOrder = afterOrder;
+    /**
+     * The reconstruction walk, paused after every fort: each call to nextInt()
+     * pops tasks off the explicit stack until the next fort to attack comes
+     * up.  Each stack entry is either "emit the subtree of v, starting
+     * unalerted/alerted" or "output v itself".  Covers the trees whose roots
+     * are in [from, to), in root order.
+     */
+    private static final class OrderCursor implements PrimitiveIterator.OfInt {
+        private final Tables t;
+        private int nextRoot;
+        private int to;
+        private int top;
+
+        OrderCursor(Tables t, int from, int to) {
+            this.t = t;
+            restart(from, to);
         }
 
-        static PartitionState empty() {
-            return new PartitionState(false, 0.0, new ArrayList<>(), 0.0, new ArrayList<>());
+        // start over on the trees with roots in [from, to)
+        void restart(int from, int to) {
+            nextRoot = from;
+            this.to = to;
+            top = 0;
         }
 
-        double combined() {
-            return beforeValue + afterValue;
+        @Override
+        public boolean hasNext() {
+            if (top > 0) {
+                return true; // every task on the stack leads to at least one OUTPUT
+            }
+            while (nextRoot < to && t.parent[nextRoot] != NO_PARENT) {
+                nextRoot++;
+            }
+            return nextRoot < to;
         }
-    }
 
-    /**
-     * We only keep ONE state for “alertedBeforeParent=true” and ONE for “false”.
-     * If the new one is strictly better (higher gold), it replaces the existing state.
-     */
-    private List<PartitionState> chooseBetter(List<PartitionState> states, PartitionState candidate) {
-        boolean replaced = false;
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int[] stack = t.stack;
+            if (top == 0) {
+                stack[top++] = task(nextRoot++, EMIT_UNALERTED); // roots start unalerted
+            }
+            while (true) {
+                int task = stack[--top];
+                int v = task >>> 2;
+                int type = task & 3;
+                if (type == OUTPUT) {
+                    return v;
+                }
+                expand(v, type);
+            }
+        }
 
-        for (int i = 0; i < states.size(); i++) {
-            PartitionState s = states.get(i);
+        private void expand(int v, int type) {
+            LabeledValueGraph graph = t.graph;
+            int[] stack = t.stack;
+
+            // walk the children backwards to recover which option each one took
+            int key = (t.finalKey[v] >> type) & 1;
+            for (int e = graph.adjEnd(v) - 1; e >= graph.adjStart(v); e--) {
+                int child = graph.adjTarget(e);
+                if (t.parent[child] != v) continue;
+                int bits = t.decision[child] >> (3 * key);
+                int option = (bits >> 1) & 1;
+                t.decision[child] = (byte) ((t.decision[child] & ~(1 << CHOSEN_BIT)) | option << CHOSEN_BIT);
+                key = (bits >> 2) & 1;
+            }
 
-            // They belong to the same kind
-            if (s.alertedBeforeParent == candidate.alertedBeforeParent) {
-                // Keep the better scoring of the two
-                if (candidate.combined() > s.combined()) {
-                    states.set(i, candidate);
+            // push in reverse: after-children, then v, then before-children,
+            // so they come off the stack as before-children, v, after-children
+            int afterType = (graph.flagsOf(v) & LabeledValueGraph.SHIELD) != 0 ? EMIT_UNALERTED : EMIT_ALERTED;
+            for (int e = graph.adjEnd(v) - 1; e >= graph.adjStart(v); e--) {
+                int child = graph.adjTarget(e);
+                if (t.parent[child] == v && chosenOption(child, t) == AFTER) {
+                    stack[top++] = task(child, afterType);
+                }
+            }
+            stack[top++] = task(v, OUTPUT);
+            for (int e = graph.adjEnd(v) - 1; e >= graph.adjStart(v); e--) {
+                int child = graph.adjTarget(e);
+                if (t.parent[child] == v && chosenOption(child, t) == BEFORE) {
+                    stack[top++] = task(child, EMIT_UNALERTED);
                 }
-                replaced = true;
-                break;
             }
         }
+    }
 
-        // No matching state existed add it
-        if (!replaced) states.add(candidate);
+    private static int task(int v, int type) {
+        return v << 2 | type;
+    }
 
-        return states;
+    private static int chosenOption(int child, Tables t) {
+        return (t.decision[child] >> CHOSEN_BIT) & 1;
     }
 }
@@ -0,0 +1,415 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The DPStrategy recurrence kept alive between edits, for a forest that
+ * changes a little at a time (gold changes, new or closed roads, forts
+ * appearing or disappearing) and should always have its best gold ready.
+ * <p>
+ * Every fort keeps the two DP values DPStrategy computes (best gold of its
+ * subtree when it starts unalerted / alerted), and also running sums of what
+ * its children contribute.  That works because a child's best "before the
+ * parent" value is always at least its "after" value.  So the parent only
+ * needs to know
+ * <ul>
+ *   <li>the sum over all children of their best value,</li>
+ *   <li>the sum with every non-shield child going after it, and</li>
+ *   <li>whether it has any non-shield children at all.</li>
+ * </ul>
+ * When a fort changes, its own values are recomputed from its sums in O(1),
+ * and then its parent's sums are patched with the difference, and so on up to
+ * the root.  The walk stops early as soon as a fort's values come out the
+ * same.  So an edit costs O(depth), and the total gold (the sum over the
+ * roots) is always current.
+ * <p>
+ * Adding an edge between two trees re-roots the second tree at its end of
+ * the new edge first, one path edge at a time with each step touching only
+ * the (current) root, so that's also O(depth).  An edge inside one tree would
+ * close a cycle, which this DP (like DPStrategy) can't handle, so it's
+ * rejected.
+ * <p>
+ * Gold is kept in half-gold units so the running sums stay exact no matter
+ * how many edits are applied.  The engine keeps its own copy of the forest;
+ * it doesn't change the graph it was built from (see
+ * {@link LabeledValueGraph#setValueAt} for updating that in place too).
+ */
+public class DynamicForestDP {
+
+    private static final int NO_PARENT = -1;
+    private static final int DEAD = -2;
+
+    private final Map<String, Integer> idOf = new HashMap<>();
+    private String[] labels;
+    private int[] value;
+    private byte[] flags;
+    private int[] parent;
+    private int[][] adj;
+    private int[] degree;
+
+    // DP values and the children's running sums, in half-gold units
+    private long[] noAlert;
+    private long[] alert;
+    private long[] sumBest;        // all children, each at its best ("before") value
+    private long[] sumAfter;       // non-shield children going after, shield children at their best
+    private int[] nonShieldChildren;
+
+    private int n;
+    private long totalHalves;
+
+    /**
+     * @param graph - a forest (it is frozen if it isn't already)
+     * @throws IllegalArgumentException if the graph has a cycle
+     */
+    public DynamicForestDP(LabeledValueGraph graph) {
+        graph.freeze();
+        n = graph.vertexCount();
+        int capacity = Math.max(16, n);
+        labels = new String[capacity];
+        value = new int[capacity];
+        flags = new byte[capacity];
+        parent = new int[capacity];
+        adj = new int[capacity][];
+        degree = new int[capacity];
+        noAlert = new long[capacity];
+        alert = new long[capacity];
+        sumBest = new long[capacity];
+        sumAfter = new long[capacity];
+        nonShieldChildren = new int[capacity];
+
+        for (int v = 0; v < n; v++) {
+            labels[v] = graph.labelOf(v);
+            idOf.put(labels[v], v);
+            value[v] = graph.valueOf(v);
+            flags[v] = graph.flagsOf(v);
+            degree[v] = graph.degree(v);
+            adj[v] = new int[Math.max(2, degree[v])];
+            for (int e = graph.adjStart(v), i = 0; e < graph.adjEnd(v); e++, i++) {
+                adj[v][i] = graph.adjTarget(e);
+            }
+        }
+
+        // post-order over each tree (explicit stack), filling in the DP bottom-up
+        Arrays.fill(parent, 0, n, DEAD);
+        int[] stack = new int[n];
+        int[] cursor = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (parent[root] != DEAD) continue;
+            parent[root] = NO_PARENT;
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int v = stack[top - 1];
+                if (cursor[v] < degree[v]) {
+                    int w = adj[v][cursor[v]++];
+                    if (w == parent[v]) continue;
+                    if (parent[w] != DEAD) {
+                        throw new IllegalArgumentException("Graph has a cycle (through " + labels[v] + " and "
+                                + labels[w] + "); DynamicForestDP only handles forests");
+                    }
+                    parent[w] = v;
+                    stack[top++] = w;
+                } else {
+                    recompute(v);
+                    if (parent[v] >= 0) {
+                        addChild(parent[v], v, noAlert[v], alert[v]);
+                    }
+                    top--;
+                }
+            }
+            totalHalves += noAlert[root];
+        }
+    }
+
+    /** @return the best total gold for the forest as it is now */
+    public double getGold() {
+        return totalHalves / 2.0;
+    }
+
+    /** @return the number of forts in the forest as it is now */
+    public int vertexCount() {
+        return idOf.size();
+    }
+
+    /**
+     * Changes a fort's gold.  O(depth).
+     */
+    public void setValue(String label, int newValue) {
+        int v = require(label);
+        value[v] = newValue;
+        refresh(v);
+    }
+
+    /**
+     * Adds a new fort with no roads.  O(1).
+     */
+    public void addVertex(String label, int newValue) {
+        if (idOf.containsKey(label)) {
+            throw new IllegalArgumentException("Vertex with label " + label + " already exists in the graph.");
+        }
+        if (n == labels.length) {
+            grow();
+        }
+        int v = n++;
+        labels[v] = label;
+        idOf.put(label, v);
+        value[v] = newValue;
+        flags[v] = LabeledValueGraph.decodeFlags(label);
+        parent[v] = NO_PARENT;
+        adj[v] = new int[2];
+        recompute(v);
+        totalHalves += noAlert[v];
+    }
+
+    /**
+     * Removes a fort and its roads; its neighbors below it become roots of
+     * their own trees.  O(degree + depth).
+     */
+    public void removeVertex(String label) {
+        int v = require(label);
+        while (degree[v] > 0) {
+            disconnect(v, adj[v][degree[v] - 1]);
+        }
+        totalHalves -= noAlert[v];
+        idOf.remove(label);
+        parent[v] = DEAD;
+        adj[v] = null;
+    }
+
+    /**
+     * Adds a road between forts in two different trees.  O(depth).
+     *
+     * @throws IllegalArgumentException if they're already in the same tree (the road would close a cycle)
+     */
+    public void addEdge(String label1, String label2) {
+        int u = require(label1);
+        int w = require(label2);
+        if (u == w || root(u) == root(w)) {
+            throw new IllegalArgumentException("Edge between " + label1 + " and " + label2
+                    + " would close a cycle; DynamicForestDP only handles forests");
+        }
+        reroot(w);
+        addNeighbor(u, w);
+        addNeighbor(w, u);
+        link(w, u);
+    }
+
+    /**
+     * Removes a road; the far side becomes a tree of its own.  O(depth).
+     */
+    public void removeEdge(String label1, String label2) {
+        int u = require(label1);
+        int w = require(label2);
+        if (indexOfNeighbor(u, w) < 0) {
+            throw new IllegalArgumentException("There is no edge between " + label1 + " and " + label2 + ".");
+        }
+        disconnect(u, w);
+    }
+
+    /**
+     * Rebuilds the best order for the forest as it is now, from the DP
+     * values (same rules as DPStrategy's reconstruction).  O(n).
+     */
+    public List<String> attackOrder() {
+        List<String> order = new ArrayList<>(idOf.size());
+        int[] stack = new int[Math.max(1, 2 * n)];
+        for (int root = 0; root < n; root++) {
+            if (parent[root] != NO_PARENT) continue;
+            int top = 0;
+            stack[top++] = root << 2; // emit root, unalerted
+            while (top > 0) {
+                int task = stack[--top];
+                int v = task >>> 2;
+                int type = task & 3;
+                if (type == 2) {
+                    order.add(labels[v]);
+                    continue;
+                }
+                // same choice as recompute(): is it better to let a non-shield child go first?
+                boolean childrenFirst = nonShieldChildren[v] > 0
+                        && sumBest[v] + alertedGold(v) > sumAfter[v] + gold(v, type == 1);
+                int afterType = shield(v) ? 0 : 1;
+                // before-children, then v, then after-children (pushed in reverse)
+                for (int i = degree[v] - 1; i >= 0; i--) {
+                    int c = adj[v][i];
+                    if (parent[c] == v && !childrenFirst && !shield(c)) stack[top++] = c << 2 | afterType;
+                }
+                stack[top++] = v << 2 | 2;
+                for (int i = degree[v] - 1; i >= 0; i--) {
+                    int c = adj[v][i];
+                    if (parent[c] == v && (childrenFirst || shield(c))) stack[top++] = c << 2;
+                }
+            }
+        }
+        return order;
+    }
+
+    // ------------------------------------------------------------------
+    // DP values and running sums
+    // ------------------------------------------------------------------
+
+    private boolean shield(int v) {
+        return (flags[v] & LabeledValueGraph.SHIELD) != 0;
+    }
+
+    private long alertedGold(int v) {
+        return (flags[v] & LabeledValueGraph.IMMUNE) != 0 ? 2L * value[v] : value[v];
+    }
+
+    private long gold(int v, boolean alerted) {
+        return alerted || (flags[v] & LabeledValueGraph.SELF_ALERT) != 0 ? alertedGold(v) : 2L * value[v];
+    }
+
+    // v's DP values from its running sums
+    private void recompute(int v) {
+        long unalerted = sumAfter[v] + gold(v, false);
+        long alerted = sumAfter[v] + alertedGold(v);
+        if (nonShieldChildren[v] > 0) {
+            // at least one non-shield child goes first, which alerts v
+            long childrenFirst = sumBest[v] + alertedGold(v);
+            unalerted = Math.max(unalerted, childrenFirst);
+            alerted = Math.max(alerted, childrenFirst);
+        }
+        noAlert[v] = unalerted;
+        alert[v] = alerted;
+    }
+
+    // adds (sign = 1) or removes (sign = -1) child c's share of p's sums, for the given values of c
+    private void addChild(int p, int c, long childNoAlert, long childAlert) {
+        changeChild(p, c, childNoAlert, childAlert, 1);
+    }
+
+    private void changeChild(int p, int c, long childNoAlert, long childAlert, int sign) {
+        sumBest[p] += sign * childNoAlert;
+        if (shield(c)) {
+            sumAfter[p] += sign * childNoAlert; // shield children can always go first
+        } else {
+            sumAfter[p] += sign * (shield(p) ? childNoAlert : childAlert);
+            nonShieldChildren[p] += sign;
+        }
+    }
+
+    /**
+     * Recomputes v, then patches the sums of each ancestor in turn, until
+     * nothing changes or the root is reached.
+     */
+    private void refresh(int v) {
+        while (true) {
+            long oldNoAlert = noAlert[v];
+            long oldAlert = alert[v];
+            recompute(v);
+            if (noAlert[v] == oldNoAlert && alert[v] == oldAlert) {
+                return;
+            }
+            int p = parent[v];
+            if (p < 0) {
+                totalHalves += noAlert[v] - oldNoAlert;
+                return;
+            }
+            changeChild(p, v, oldNoAlert, oldAlert, -1);
+            addChild(p, v, noAlert[v], alert[v]);
+            v = p;
+        }
+    }
+
+    // makes root c a child of p
+    private void link(int c, int p) {
+        totalHalves -= noAlert[c];
+        parent[c] = p;
+        addChild(p, c, noAlert[c], alert[c]);
+        refresh(p);
+    }
+
+    // makes c (a child) a root
+    private void cut(int c) {
+        int p = parent[c];
+        changeChild(p, c, noAlert[c], alert[c], -1);
+        parent[c] = NO_PARENT;
+        totalHalves += noAlert[c];
+        refresh(p);
+    }
+
+    // removes the edge u-w (which must exist) from the tree and the adjacency lists
+    private void disconnect(int u, int w) {
+        if (parent[w] == u) {
+            cut(w);
+        } else {
+            cut(u);
+        }
+        removeNeighbor(u, w);
+        removeNeighbor(w, u);
+    }
+
+    /**
+     * Makes w the root of its tree by flipping the edges on the path to the
+     * old root.  The cuts go top-down and the links bottom-up, so each step
+     * only changes a fort that is a root at that moment.
+     */
+    private void reroot(int w) {
+        int length = 0;
+        for (int v = w; v >= 0; v = parent[v]) length++;
+        int[] path = new int[length];
+        for (int v = w, i = 0; v >= 0; v = parent[v]) path[i++] = v;
+
+        for (int i = length - 2; i >= 0; i--) {
+            cut(path[i]);
+        }
+        for (int i = length - 2; i >= 0; i--) {
+            link(path[i + 1], path[i]);
+        }
+    }
+
+    private int root(int v) {
+        while (parent[v] >= 0) v = parent[v];
+        return v;
+    }
+
+    // ------------------------------------------------------------------
+    // adjacency lists
+    // ------------------------------------------------------------------
+
+    private int require(String label) {
+        Integer v = idOf.get(label);
+        if (v == null) {
+            throw new IllegalArgumentException("Vertex with label " + label + " does not exist in the graph.");
+        }
+        return v;
+    }
+
+    private int indexOfNeighbor(int v, int w) {
+        for (int i = 0; i < degree[v]; i++) {
+            if (adj[v][i] == w) return i;
+        }
+        return -1;
+    }
+
+    private void addNeighbor(int v, int w) {
+        if (degree[v] == adj[v].length) {
+            adj[v] = Arrays.copyOf(adj[v], 2 * degree[v]);
+        }
+        adj[v][degree[v]++] = w;
+    }
+
+    private void removeNeighbor(int v, int w) {
+        int i = indexOfNeighbor(v, w);
+        System.arraycopy(adj[v], i + 1, adj[v], i, degree[v] - i - 1); // keep the order, like the graph does
+        degree[v]--;
+    }
+
+    private void grow() {
+        int capacity = 2 * labels.length;
+        labels = Arrays.copyOf(labels, capacity);
+        value = Arrays.copyOf(value, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        adj = Arrays.copyOf(adj, capacity);
+        degree = Arrays.copyOf(degree, capacity);
+        noAlert = Arrays.copyOf(noAlert, capacity);
+        alert = Arrays.copyOf(alert, capacity);
+        sumBest = Arrays.copyOf(sumBest, capacity);
+        sumAfter = Arrays.copyOf(sumAfter, capacity);
+        nonShieldChildren = Arrays.copyOf(nonShieldChildren, capacity);
+    }
+}
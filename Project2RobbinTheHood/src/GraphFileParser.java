@@ -0,0 +1,360 @@
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A fast loader for the .graph file format, used by
+ * {@link LabeledValueGraph#LabeledValueGraph(String)}.
+ * <p>
+ * The file is read in large blocks through a FileChannel and tokenized
+ * straight from the bytes: no Scanner, no regular expressions, and no String
+ * per line or per token.  Each "label:value" token is looked up by its label
+ * bytes in a hash table that interns labels to dense ids (in order of first
+ * appearance, the same ids {@link LabeledValueGraph#freeze()} would give), so
+ * a String is only created the first time a label is seen.  Edges are
+ * collected as pairs of ids and turned into the frozen CSR arrays at the end.
+ * <p>
+ * The accepted format, and the errors for bad input, are the same as the old
+ * Scanner-based loader: blank lines and lines starting with "//" are skipped,
+ * a line with one token declares a vertex, a line with two declares an edge
+ * (longer lines are ignored), a token without ':' or a vertex whose value
+ * differs from an earlier one is an IllegalArgumentException, and a value
+ * that isn't a number is a NumberFormatException.  Any token that isn't a
+ * plain "label:digits" is handed to the old String-based code, so unusual
+ * input fails (or succeeds) exactly the way it used to.
+ */
+final class GraphFileParser {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    // most distinct labels allowed before giving up
+    private final int maxVertices;
+
+    // labels, in id order
+    private String[] labels = new String[16];
+    private int[] values = new int[16];
+    private int vertexCount;
+
+    // raw label bytes, for comparing tokens without decoding them
+    private byte[] labelBytes = new byte[256];
+    private int[] labelStart = new int[17];
+    private int labelBytesUsed;
+
+    // open-addressing table of (id + 1), 0 marks an empty slot
+    private int[] labelTable = new int[32];
+
+    // edges as (from, to) id pairs, in file order
+    private int[] edgeEnds = new int[32];
+    private int edgeCount;
+    // open-addressing set of (min id, max id) + 1, 0 marks an empty slot
+    private long[] edgeTable = new long[32];
+
+    // the current line being parsed, and the two tokens found on it
+    private byte[] line;
+    private final int[] tokenStart = new int[2];
+    private final int[] tokenEnd = new int[2];
+
+    private GraphFileParser(int maxVertices) {
+        this.maxVertices = maxVertices;
+    }
+
+    /**
+     * Loads a graph from the given file.
+     *
+     * @return the graph, already frozen
+     * @throws FileNotFoundException if the file can't be opened
+     */
+    static LabeledValueGraph parse(String filename) throws FileNotFoundException {
+        GraphFileParser parser = new GraphFileParser(Integer.MAX_VALUE);
+        try (FileInputStream in = new FileInputStream(filename); FileChannel channel = in.getChannel()) {
+            parser.readAll(channel);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return parser.toGraph();
+    }
+
+    /**
+     * Loads a graph in the same format from a stream (read to the end, but not closed).
+     *
+     * @param maxVertices - most vertices to accept; parsing stops with a
+     *                    {@link TooManyVerticesException} as soon as there are more
+     * @return the graph, already frozen
+     */
+    static LabeledValueGraph parse(InputStream in, int maxVertices) throws IOException {
+        GraphFileParser parser = new GraphFileParser(maxVertices);
+        parser.readAll(Channels.newChannel(in));
+        return parser.toGraph();
+    }
+
+    private void readAll(ReadableByteChannel channel) throws IOException {
+        byte[] buffer = new byte[BLOCK_SIZE];
+        int filled = 0;
+        boolean eof = false;
+        while (!eof) {
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2); // a line longer than the buffer
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, filled, buffer.length - filled));
+            if (read < 0) {
+                eof = true;
+            } else {
+                filled += read;
+            }
+
+            // parse every complete line in the buffer (and at the end, the unterminated last one)
+            int lineStart = 0;
+            for (int i = 0; i < filled; i++) {
+                byte b = buffer[i];
+                if (b == '\n' || b == '\r') {
+                    parseLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (eof && lineStart < filled) {
+                parseLine(buffer, lineStart, filled);
+                lineStart = filled;
+            }
+            System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+            filled -= lineStart;
+        }
+    }
+
+    private void parseLine(byte[] buffer, int start, int end) {
+        // same as String.trim()
+        while (start < end && (buffer[start] & 0xFF) <= ' ') start++;
+        while (end > start && (buffer[end - 1] & 0xFF) <= ' ') end--;
+        if (start == end || (end - start >= 2 && buffer[start] == '/' && buffer[start + 1] == '/')) {
+            return;
+        }
+
+        // split on whitespace (the \s characters)
+        int tokens = 0;
+        int i = start;
+        while (i < end) {
+            while (i < end && isWhitespace(buffer[i])) i++;
+            int tokenBegin = i;
+            while (i < end && !isWhitespace(buffer[i])) i++;
+            if (tokens < 2) {
+                tokenStart[tokens] = tokenBegin;
+                tokenEnd[tokens] = i;
+            }
+            tokens++;
+        }
+
+        line = buffer;
+        if (tokens == 1) { // declaring a vertex
+            vertexFromLabelColonValue(tokenStart[0], tokenEnd[0]);
+        } else if (tokens == 2) { // declaring an edge
+            int v = vertexFromLabelColonValue(tokenStart[0], tokenEnd[0]);
+            int w = vertexFromLabelColonValue(tokenStart[1], tokenEnd[1]);
+            addEdge(v, w);
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    /**
+     * Finds (or creates) the vertex for the "label:value" token in line[start, end).
+     * @return its id
+     */
+    private int vertexFromLabelColonValue(int start, int end) {
+        int colon = -1;
+        boolean plain = true;
+        for (int i = start; i < end; i++) {
+            if (line[i] == ':') {
+                if (colon >= 0) {
+                    plain = false;
+                    break;
+                }
+                colon = i;
+            }
+        }
+        if (colon < 0) {
+            throw new IllegalArgumentException("Error reading file, trying to parse vertex \"" + tokenString(start, end) + "\", but it's not in \"vertexName:value\" format!");
+        }
+
+        // fast path: "label:digits" with few enough digits that it can't overflow
+        int digits = end - colon - 1;
+        plain = plain && colon > start && digits >= 1 && digits <= 9;
+        int value = 0;
+        for (int i = colon + 1; plain && i < end; i++) {
+            int d = line[i] - '0';
+            if (d < 0 || d > 9) {
+                plain = false;
+            }
+            value = value * 10 + d;
+        }
+
+        int id;
+        if (plain) {
+            id = internLabel(line, start, colon, value);
+        } else {
+            // anything unusual goes through exactly the same code as before
+            String vertexColonValue = tokenString(start, end);
+            String[] vertexAndValue = vertexColonValue.split(":");
+            String vertexLabel = vertexAndValue[0];
+            value = Integer.parseInt(vertexAndValue[1]);
+            byte[] bytes = vertexLabel.getBytes(StandardCharsets.UTF_8);
+            id = internLabel(bytes, 0, bytes.length, value);
+        }
+        if (values[id] != value) {
+            throw new IllegalArgumentException("Error reading file, found vertex \"" + tokenString(start, end) + "\", but it's value is different from the value already set for this vertex!");
+        }
+        return id;
+    }
+
+    private String tokenString(int start, int end) {
+        return new String(line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the id of the label in bytes[start, end), adding it (with the
+     * given value) if it hasn't been seen yet
+     */
+    private int internLabel(byte[] bytes, int start, int end, int value) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int mask = labelTable.length - 1;
+        int slot = mix(hash) & mask;
+        for (; labelTable[slot] != 0; slot = (slot + 1) & mask) {
+            int id = labelTable[slot] - 1;
+            if (Arrays.equals(labelBytes, labelStart[id], labelStart[id + 1], bytes, start, end)) {
+                return id;
+            }
+        }
+
+        if (vertexCount == maxVertices) {
+            throw new TooManyVerticesException(maxVertices);
+        }
+        int id = vertexCount++;
+        if (id == labels.length) {
+            labels = Arrays.copyOf(labels, id * 2);
+            values = Arrays.copyOf(values, id * 2);
+            labelStart = Arrays.copyOf(labelStart, id * 2 + 1);
+        }
+        int length = end - start;
+        if (labelBytesUsed + length > labelBytes.length) {
+            labelBytes = Arrays.copyOf(labelBytes, Math.max(labelBytes.length * 2, labelBytesUsed + length));
+        }
+        System.arraycopy(bytes, start, labelBytes, labelBytesUsed, length);
+        labelBytesUsed += length;
+        labelStart[id + 1] = labelBytesUsed;
+        labels[id] = new String(bytes, start, length, StandardCharsets.UTF_8);
+        values[id] = value;
+
+        labelTable[slot] = id + 1;
+        if (vertexCount * 2 > labelTable.length) {
+            rehashLabels();
+        }
+        return id;
+    }
+
+    private void rehashLabels() {
+        labelTable = new int[labelTable.length * 2];
+        int mask = labelTable.length - 1;
+        for (int id = 0; id < vertexCount; id++) {
+            int hash = 1;
+            for (int i = labelStart[id]; i < labelStart[id + 1]; i++) {
+                hash = 31 * hash + labelBytes[i];
+            }
+            int slot = mix(hash) & mask;
+            while (labelTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            labelTable[slot] = id + 1;
+        }
+    }
+
+    private void addEdge(int v, int w) {
+        long key = ((long) Math.min(v, w) << 32 | Math.max(v, w)) + 1;
+        int mask = edgeTable.length - 1;
+        int slot = mix(Long.hashCode(key)) & mask;
+        for (; edgeTable[slot] != 0; slot = (slot + 1) & mask) {
+            if (edgeTable[slot] == key) {
+                throw new IllegalArgumentException("Edge between " + labels[v] + " and " + labels[w] + " already exists in the graph.");
+            }
+        }
+        edgeTable[slot] = key;
+
+        if (2 * edgeCount + 2 > edgeEnds.length) {
+            edgeEnds = Arrays.copyOf(edgeEnds, edgeEnds.length * 2);
+        }
+        edgeEnds[2 * edgeCount] = v;
+        edgeEnds[2 * edgeCount + 1] = w;
+        edgeCount++;
+        if (edgeCount * 2 > edgeTable.length) {
+            rehashEdges();
+        }
+    }
+
+    private void rehashEdges() {
+        long[] old = edgeTable;
+        edgeTable = new long[old.length * 2];
+        int mask = edgeTable.length - 1;
+        for (long key : old) {
+            if (key != 0) {
+                int slot = mix(Long.hashCode(key)) & mask;
+                while (edgeTable[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                edgeTable[slot] = key;
+            }
+        }
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Builds the frozen graph: both directions of every edge, in file order. */
+    private LabeledValueGraph toGraph() {
+        String[] finalLabels = Arrays.copyOf(labels, vertexCount);
+        int[] finalValues = Arrays.copyOf(values, vertexCount);
+        byte[] flags = new byte[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            flags[v] = LabeledValueGraph.decodeFlags(finalLabels[v]);
+        }
+
+        int[] adjOffsets = new int[vertexCount + 1];
+        for (int e = 0; e < 2 * edgeCount; e++) {
+            adjOffsets[edgeEnds[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            adjOffsets[v + 1] += adjOffsets[v];
+        }
+        int[] next = Arrays.copyOf(adjOffsets, vertexCount);
+        int[] adjTargets = new int[2 * edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int v = edgeEnds[2 * e];
+            int w = edgeEnds[2 * e + 1];
+            adjTargets[next[v]++] = w;
+            adjTargets[next[w]++] = v;
+        }
+        return new LabeledValueGraph(finalLabels, finalValues, flags, adjOffsets, adjTargets);
+    }
+
+    /** Thrown by {@link #parse(InputStream, int)} when the graph has too many vertices. */
+    static final class TooManyVerticesException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        TooManyVerticesException(int maxVertices) {
+            super("Graph has more than " + maxVertices + " vertices");
+        }
+    }
+}
@@ -0,0 +1,310 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact binary snapshot of a (frozen) LabeledValueGraph, for graphs that
+ * get loaded over and over.
+ * <p>
+ * The file is just the frozen form written out as-is, so opening it needs no
+ * parsing at all: every section is memory-mapped, and this class is a
+ * read-only view over the mapped (off-heap) data with the same id-based
+ * accessors as a frozen LabeledValueGraph.  Use {@link #toGraph()} to get an
+ * ordinary on-heap graph that the strategies can work on.
+ * <p>
+ * Layout (all numbers little-endian):
+ * <pre>
+ *   header       magic "RHGS", version, vertex count n, adjacency length,
+ *                label byte count, label index capacity (6 ints)
+ *   labelStart   int[n + 1]   label v is labelBytes[labelStart[v] .. labelStart[v+1])
+ *   values       int[n]
+ *   adjOffsets   int[n + 1]   the frozen CSR adjacency
+ *   adjTargets   int[adjacency length]
+ *   labelIndex   int[capacity] open-addressing table of (id + 1) by label hash
+ *   flags        byte[n]
+ *   labelBytes   byte[label byte count]  UTF-8
+ * </pre>
+ * The label index is the same table a frozen graph builds, keyed by
+ * String.hashCode() (which is fixed by the language spec), so
+ * {@link #indexOf(String)} works straight off the file too.
+ * <p>
+ * Running this class converts text .graph files to snapshots (all of
+ * samples/*.graph if no files are given), writing each next to its source
+ * with a ".snapshot" extension.
+ */
+public class GraphSnapshot {
+
+    private static final int MAGIC = 0x53474852; // "RHGS" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    private final int n;
+    private final IntBuffer labelStart;
+    private final IntBuffer values;
+    private final IntBuffer adjOffsets;
+    private final IntBuffer adjTargets;
+    private final IntBuffer labelIndex;
+    private final ByteBuffer flags;
+    private final ByteBuffer labelBytes;
+
+    private GraphSnapshot(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r"); FileChannel channel = file.getChannel()) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a graph snapshot: " + filename);
+            }
+            IntBuffer header = map(channel, 0, HEADER_BYTES).asIntBuffer();
+            if (header.get(0) != MAGIC || header.get(1) != VERSION) {
+                throw new IOException("Not a graph snapshot (or an unsupported version): " + filename);
+            }
+            n = header.get(2);
+            int adjLength = header.get(3);
+            int labelByteCount = header.get(4);
+            int indexCapacity = header.get(5);
+
+            long expectedSize = HEADER_BYTES
+                    + 4L * ((n + 1) + n + (n + 1) + adjLength + indexCapacity)
+                    + n + labelByteCount;
+            if (channel.size() != expectedSize) {
+                throw new IOException("Graph snapshot is truncated or corrupt: " + filename);
+            }
+
+            long offset = HEADER_BYTES;
+            labelStart = map(channel, offset, 4L * (n + 1)).asIntBuffer();
+            offset += 4L * (n + 1);
+            values = map(channel, offset, 4L * n).asIntBuffer();
+            offset += 4L * n;
+            adjOffsets = map(channel, offset, 4L * (n + 1)).asIntBuffer();
+            offset += 4L * (n + 1);
+            adjTargets = map(channel, offset, 4L * adjLength).asIntBuffer();
+            offset += 4L * adjLength;
+            labelIndex = map(channel, offset, 4L * indexCapacity).asIntBuffer();
+            offset += 4L * indexCapacity;
+            flags = map(channel, offset, n);
+            offset += n;
+            labelBytes = map(channel, offset, labelByteCount);
+        }
+        // (the mappings stay valid after the channel is closed)
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Memory-maps a snapshot written by {@link #write}.
+     */
+    public static GraphSnapshot open(String filename) throws IOException {
+        return new GraphSnapshot(filename);
+    }
+
+    /**
+     * Writes the graph (which is frozen first, if it isn't already) as a snapshot.
+     */
+    public static void write(LabeledValueGraph graph, String filename) throws IOException {
+        graph.freeze();
+        int n = graph.vertexCount();
+        String[] labels = graph.getAllVertexLabels().toArray(new String[0]);
+        byte[][] encoded = new byte[n][];
+        int labelByteCount = 0;
+        for (int v = 0; v < n; v++) {
+            encoded[v] = labels[v].getBytes(StandardCharsets.UTF_8);
+            labelByteCount += encoded[v].length;
+        }
+        int adjLength = n == 0 ? 0 : graph.adjEnd(n - 1);
+        int[] index = LabeledValueGraph.buildLabelIndex(labels);
+
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw"); FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(n);
+            out.putInt(adjLength);
+            out.putInt(labelByteCount);
+            out.putInt(index.length);
+
+            int start = 0;
+            out.putInt(start);
+            for (int v = 0; v < n; v++) {
+                start += encoded[v].length;
+                out.putInt(start);
+            }
+            for (int v = 0; v < n; v++) {
+                out.putInt(graph.valueOf(v));
+            }
+            out.putInt(0);
+            for (int v = 0; v < n; v++) {
+                out.putInt(graph.adjEnd(v));
+            }
+            for (int e = 0; e < adjLength; e++) {
+                out.putInt(graph.adjTarget(e));
+            }
+            for (int slot : index) {
+                out.putInt(slot);
+            }
+            for (int v = 0; v < n; v++) {
+                out.put(graph.flagsOf(v));
+            }
+            for (int v = 0; v < n; v++) {
+                out.put(encoded[v]);
+            }
+            out.flush();
+        }
+    }
+
+    /** Small buffered little-endian writer on top of a FileChannel. */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int x) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) flush();
+            buffer.putInt(x);
+        }
+
+        void put(byte b) throws IOException {
+            if (!buffer.hasRemaining()) flush();
+            buffer.put(b);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int i = 0; i < bytes.length; ) {
+                if (!buffer.hasRemaining()) flush();
+                int chunk = Math.min(buffer.remaining(), bytes.length - i);
+                buffer.put(bytes, i, chunk);
+                i += chunk;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Read-only view (same meaning as the frozen LabeledValueGraph accessors)
+    // ------------------------------------------------------------------
+
+    /** @return the number of vertices in the graph */
+    public int vertexCount() {
+        return n;
+    }
+
+    /** @return the dense id of the vertex labeled v, or -1 if there is no such vertex */
+    public int indexOf(String v) {
+        byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+        int mask = labelIndex.capacity() - 1;
+        for (int slot = LabeledValueGraph.mix(v.hashCode()) & mask; labelIndex.get(slot) != 0; slot = (slot + 1) & mask) {
+            int id = labelIndex.get(slot) - 1;
+            if (labelEquals(id, bytes)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private boolean labelEquals(int id, byte[] bytes) {
+        int start = labelStart.get(id);
+        if (labelStart.get(id + 1) - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (labelBytes.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return the label of the vertex with the given id */
+    public String labelOf(int id) {
+        int start = labelStart.get(id);
+        byte[] bytes = new byte[labelStart.get(id + 1) - start];
+        labelBytes.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** @return the value of the vertex with the given id */
+    public int valueOf(int id) {
+        return values.get(id);
+    }
+
+    /** @return the packed SELF_ALERT/IMMUNE/SHIELD bits of the given vertex */
+    public byte flagsOf(int id) {
+        return flags.get(id);
+    }
+
+    /** @return the number of neighbors of the vertex with the given id */
+    public int degree(int id) {
+        return adjOffsets.get(id + 1) - adjOffsets.get(id);
+    }
+
+    /** @see LabeledValueGraph#adjStart(int) */
+    public int adjStart(int id) {
+        return adjOffsets.get(id);
+    }
+
+    /** @see LabeledValueGraph#adjStart(int) */
+    public int adjEnd(int id) {
+        return adjOffsets.get(id + 1);
+    }
+
+    /** @see LabeledValueGraph#adjStart(int) */
+    public int adjTarget(int edgeIndex) {
+        return adjTargets.get(edgeIndex);
+    }
+
+    /**
+     * Copies the snapshot into an ordinary (frozen, on-heap) graph.
+     */
+    public LabeledValueGraph toGraph() {
+        String[] labels = new String[n];
+        int[] valueArray = new int[n];
+        byte[] flagArray = new byte[n];
+        int[] offsetArray = new int[n + 1];
+        int[] targetArray = new int[adjTargets.capacity()];
+        for (int v = 0; v < n; v++) {
+            labels[v] = labelOf(v);
+        }
+        values.get(0, valueArray);
+        flags.get(0, flagArray);
+        adjOffsets.get(0, offsetArray);
+        adjTargets.get(0, targetArray);
+        return new LabeledValueGraph(labels, valueArray, flagArray, offsetArray, targetArray);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> inputs = new ArrayList<>(List.of(args));
+        if (inputs.isEmpty()) {
+            File[] samples = new File("samples").listFiles((dir, name) -> name.endsWith(".graph"));
+            if (samples != null) {
+                for (File f : samples) {
+                    inputs.add(f.getPath());
+                }
+            }
+        }
+        for (String input : inputs) {
+            String output = (input.endsWith(".graph") ? input.substring(0, input.length() - ".graph".length()) : input) + ".snapshot";
+            long start = System.nanoTime();
+            LabeledValueGraph graph = new LabeledValueGraph(input);
+            write(graph, output);
+            System.out.printf("%s -> %s (%d vertices, %d bytes, %.1f ms)%n", input, output,
+                    graph.vertexCount(), new File(output).length(), (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
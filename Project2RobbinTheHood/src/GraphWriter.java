@@ -0,0 +1,156 @@
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the text .graph format straight to a file, one line at a time,
+ * through a fixed-size buffer -- so writing a graph never needs the whole
+ * file's text in memory, and a generator can write vertices and edges
+ * without building a graph at all.
+ * <p>
+ * Labels are written as UTF-8 (which is what {@link GraphFileParser} reads),
+ * and numbers are formatted straight into the buffer without creating Strings.
+ * I/O errors after the file has been opened are thrown as UncheckedIOException.
+ */
+public class GraphWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] digits = new byte[11];
+
+    /**
+     * @param filename - the file to create (or overwrite)
+     * @throws FileNotFoundException if the file can't be opened for writing
+     */
+    public GraphWriter(String filename) throws FileNotFoundException {
+        channel = new FileOutputStream(filename).getChannel();
+    }
+
+    /** Writes a "//text" comment line. */
+    public GraphWriter comment(String text) {
+        putAscii("//");
+        putString(text);
+        put('\n');
+        return this;
+    }
+
+    /** Writes a "label:value" line declaring a vertex. */
+    public GraphWriter vertex(String label, int value) {
+        putVertex(label, value);
+        put('\n');
+        return this;
+    }
+
+    /** Writes a "label1:value1 label2:value2" line declaring an edge. */
+    public GraphWriter edge(String label1, int value1, String label2, int value2) {
+        putVertex(label1, value1);
+        put(' ');
+        putVertex(label2, value2);
+        put('\n');
+        return this;
+    }
+
+    /** Writes an empty line. */
+    public GraphWriter newLine() {
+        put('\n');
+        return this;
+    }
+
+    /** Writes raw text (no line break is added). */
+    public GraphWriter text(String text) {
+        putString(text);
+        return this;
+    }
+
+    private void putVertex(String label, int value) {
+        putString(label);
+        put(':');
+        putInt(value);
+    }
+
+    private void put(char ch) {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) ch);
+    }
+
+    private void putAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    private void putString(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                putBytes(s.getBytes(StandardCharsets.UTF_8)); // not plain ASCII, let the encoder do it
+                return;
+            }
+        }
+        putAscii(s);
+    }
+
+    private void putBytes(byte[] bytes) {
+        for (int i = 0; i < bytes.length; ) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(buffer.remaining(), bytes.length - i);
+            buffer.put(bytes, i, chunk);
+            i += chunk;
+        }
+    }
+
+    private void putInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            putAscii(Integer.toString(value));
+            return;
+        }
+        if (value < 0) {
+            put('-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (length > 0) {
+            put((char) digits[--length]);
+        }
+    }
+
+    /** Writes out everything buffered so far. */
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -7,178 +7,260 @@ import java.util.*;
  * A greedy algorithm to select vertices for robbing.
  * Basically: keep picking the "best looking" fort at each step,
  * updating scores as alerts spread.
+ * <p>
+ * Everything works on the frozen graph's int ids: scores live in a double[],
+ * alerted/attacked forts in epoch-stamped marks, and the forts still to be robbed sit in
+ * an indexed max-heap, so when an alert changes a fort's score its heap entry
+ * is moved up or down in place (a real decrease/increase-key) instead of
+ * piling up stale entries.  Memory stays O(N).
+ * <p>
+ * Ties between equal scores go to the fort with the lower id (i.e. the one
+ * that comes first in the graph), so the order is deterministic.
+ * <p>
+ * Given a {@link SolverWorkspace}, all of those arrays come from it and are
+ * reused by the next call, so solving graph after graph only allocates the
+ * returned list.
  */
 public class GreedyStrategy implements RobbingStrategy {
 
-    // a helper class so we don't keep reparsing labels.
-    // Stores all the info we care about for each fort
-    private static class FortInfo {
-        final double value;      // gold value
-        final boolean immune;    // can't lose gold from alerts
-        final boolean selfAlert; // goes on alert the moment you hit it
-        final boolean shield;    // doesn't trigger alerts in neighbors
-        final List<String> neighbors;
-
-        FortInfo(String label,
-                 char immuneChar,
-                 char selfAlertChar,
-                 char shieldChar,
-                 List<String> neighbors,
-                 double value) {
-            this.value = value;
-            this.immune = label.contains("" + immuneChar);
-            this.selfAlert = label.contains("" + selfAlertChar);
-            this.shield = label.contains("" + shieldChar);
-            this.neighbors = neighbors;
-        }
+    // SolverWorkspace slots (numbered separately for each array type)
+    private static final int VALUE = 0;
+    private static final int PENALTY = 0;
+    private static final int SCORE = 0;
+    private static final int FLAGS = 0;
+    private static final int HEAP = 1;
+    private static final int POSITION = 2;
+    private static final int ATTACKED = 0;
+    private static final int ALERTED = 1;
+
+    private final SolverWorkspace workspace;
+
+    /**
+     * Creates a greedy strategy that allocates its arrays fresh on every call.
+     */
+    public GreedyStrategy() {
+        this(null);
     }
 
-    // This is what goes into the priority queue
-    // The version is a trick to know whether an entry is outdated
-    private static class Entry {
-        final String label;
-        final int version;
-        final double score;
-
-        Entry(String label, int version, double score) {
-            this.label = label;
-            this.version = version;
-            this.score = score;
-        }
+    /**
+     * @param workspace - where to keep the arrays between calls (null means allocate
+     *                  them every call); only one call at a time may use it
+     */
+    public GreedyStrategy(SolverWorkspace workspace) {
+        this.workspace = workspace;
     }
 
     @Override
     public List<String> chooseOrderToAttack(LabeledValueGraph graph) {
-
-        List<String> vertices = graph.getAllVertexLabels();
-        List<String> attackOrder = new ArrayList<>(vertices.size());
+        long start = Metrics.startTimer();
+        graph.freeze();
+        int n = graph.vertexCount();
+        List<String> attackOrder = new ArrayList<>(n);
+        SolverWorkspace ws = workspace != null ? workspace : new SolverWorkspace();
 
         // Keep track of forts we've already robbed + any that are currently on high alert
-        Set<String> alreadyAttacked = new HashSet<>();
-        Set<String> highAlertForts = new HashSet<>();
-
-        // Decode the special characters the instructor hid in the obfuscated array
-        char selfAlertChar = (char) (AttackValueVerifier.obfuscated[0] >> 1);
-        char immuneChar = (char) (AttackValueVerifier.obfuscated[1] << 1);
-        char shieldChar = (char) (AttackValueVerifier.obfuscated[2] >> 1);
+        SolverWorkspace.Marks alreadyAttacked = ws.marks(ATTACKED, n);
+        SolverWorkspace.Marks highAlertForts = ws.marks(ALERTED, n);
 
         // Preload all fort info so we don't keep asking the graph for stuff
-        Map<String, FortInfo> infoMap = new HashMap<>();
-        for (String v : vertices) {
-            infoMap.put(v, new FortInfo(v, immuneChar, selfAlertChar, shieldChar,
-                    graph.getAdjacentVertices(v), graph.getValueAt(v)));
+        int[] value = ws.ints(VALUE, n);
+        byte[] flags = ws.bytes(FLAGS, n);
+        for (int v = 0; v < n; v++) {
+            value[v] = graph.valueOf(v);
+            flags[v] = graph.flagsOf(v);
         }
 
-        // Each vertex gets a version number so we know when PQ entries are stale
-        Map<String, Integer> vertexVersion = new HashMap<>();
-        PriorityQueue<Entry> pq = new PriorityQueue<>(Comparator.comparingDouble((Entry e) -> e.score).reversed());
+        // penalty[v] is what we'd lose by alerting v's neighbors, kept in half-gold units
+        // so updating it as neighbors go on alert is exact
+        long[] penalty = ws.longs(PENALTY, n);
+        for (int v = 0; v < n; v++) {
+            penalty[v] = 0;
+            for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                int neighbor = graph.adjTarget(e);
+                // Skip neighbors that are already doomed or immune anyway
+                if ((flags[neighbor] & (LabeledValueGraph.IMMUNE | LabeledValueGraph.SELF_ALERT)) == 0) {
+                    // Rough guess, alerting them probably costs us half their gold
+                    penalty[v] += value[neighbor];
+                }
+            }
+        }
 
         // Initialize the queue with a score guess for each fort
-        for (String v : vertices) {
-            vertexVersion.put(v, 0);
-            pq.add(new Entry(v, 0, computeScore(v, infoMap, highAlertForts)));
+        double[] score = ws.doubles(SCORE, n);
+        for (int v = 0; v < n; v++) {
+            score[v] = computeScore(v, graph, value, flags, penalty, highAlertForts);
         }
+        IndexedMaxHeap pq = new IndexedMaxHeap(score, n, ws.ints(HEAP, n), ws.ints(POSITION, n));
 
         // Main greedy loop, pick the best scoring fort at each step
-        while (attackOrder.size() < vertices.size()) {
-            Entry best = pq.poll();
-            if (best == null) break; // shouldn't happen
-
-            // If we've already robbed this one, skip it
-            if (alreadyAttacked.contains(best.label)) continue;
-
-            // If PQ entry is outdated, recalc and reinsert instead of using it
-            if (best.version != vertexVersion.get(best.label)) {
-                int currentVersion = vertexVersion.get(best.label);
-                pq.add(new Entry(best.label, currentVersion, computeScore(best.label, infoMap, highAlertForts)));
-                continue;
-            }
+        while (!pq.isEmpty()) {
+            int best = pq.poll();
 
             // Lock in the choice
-            attackOrder.add(best.label);
-            alreadyAttacked.add(best.label);
-
-            FortInfo selectedInfo = infoMap.get(best.label);
+            attackOrder.add(graph.labelOf(best));
+            alreadyAttacked.set(best);
 
             // Self alert fort goes on alert immediately
-            if (selectedInfo.selfAlert) {
-                if (highAlertForts.add(best.label)) {
-                    updateScoresForAlert(best.label, infoMap, highAlertForts, vertexVersion, pq);
-                }
+            if ((flags[best] & LabeledValueGraph.SELF_ALERT) != 0) {
+                alert(best, graph, value, flags, penalty, score, highAlertForts, alreadyAttacked, pq);
             }
 
             // If it's not a shield fort, hitting it can alert its neighbors.
-            if (!selectedInfo.shield) {
-                for (String neighbor : selectedInfo.neighbors) {
-                    if (highAlertForts.add(neighbor)) {
-                        updateScoresForAlert(neighbor, infoMap, highAlertForts, vertexVersion, pq);
-                    }
+            if ((flags[best] & LabeledValueGraph.SHIELD) == 0) {
+                for (int e = graph.adjStart(best); e < graph.adjEnd(best); e++) {
+                    alert(graph.adjTarget(e), graph, value, flags, penalty, score, highAlertForts, alreadyAttacked, pq);
                 }
             }
         }
 
+        // every score change is followed by a heap update, so that also counts the rescores
+        if (Metrics.isEnabled()) {
+            Metrics.add(Metrics.Counter.GREEDY_PQ_PUSHES, n);
+            Metrics.add(Metrics.Counter.GREEDY_PQ_POLLS, n);
+            Metrics.add(Metrics.Counter.GREEDY_PQ_UPDATES, pq.updates);
+            Metrics.add(Metrics.Counter.GREEDY_RESCORES, n + pq.updates);
+        }
+        Metrics.stopTimer(Metrics.Phase.SOLVE, start);
         return attackOrder;
     }
 
-    // When something goes on alert, a bunch of scores change,
-    // so this bumps version numbers and pushes new PQ entries.
-    private void updateScoresForAlert(String alerted,
-                                      Map<String, FortInfo> infoMap,
-                                      Set<String> highAlertForts,
-                                      Map<String, Integer> vertexVersion,
-                                      PriorityQueue<Entry> pq) {
+    // When something goes on alert, its own score and its neighbors' scores change,
+    // so this fixes them up and moves them in the heap.
+    private void alert(int alerted, LabeledValueGraph graph, int[] value, byte[] flags, long[] penalty,
+                       double[] score, SolverWorkspace.Marks highAlertForts, SolverWorkspace.Marks alreadyAttacked,
+                       IndexedMaxHeap pq) {
+        if (highAlertForts.get(alerted)) {
+            return;
+        }
+        highAlertForts.set(alerted);
 
         // Update the alerted fort
-        int newVersion = vertexVersion.get(alerted) + 1;
-        vertexVersion.put(alerted, newVersion);
-        pq.add(new Entry(alerted, newVersion, computeScore(alerted, infoMap, highAlertForts)));
+        if (!alreadyAttacked.get(alerted)) {
+            score[alerted] = computeScore(alerted, graph, value, flags, penalty, highAlertForts);
+            pq.update(alerted);
+        }
 
-        // Also update its neighbors, since their penalty/gold values might change now
-        for (String neighbor : infoMap.get(alerted).neighbors) {
-            int neighborVersion = vertexVersion.get(neighbor) + 1;
-            vertexVersion.put(neighbor, neighborVersion);
-            pq.add(new Entry(neighbor, neighborVersion, computeScore(neighbor, infoMap, highAlertForts)));
+        // Also update its neighbors, alerting them won't cost this fort's gold anymore
+        if ((flags[alerted] & (LabeledValueGraph.IMMUNE | LabeledValueGraph.SELF_ALERT)) == 0) {
+            for (int e = graph.adjStart(alerted); e < graph.adjEnd(alerted); e++) {
+                int neighbor = graph.adjTarget(e);
+                penalty[neighbor] -= value[alerted];
+                if (!alreadyAttacked.get(neighbor)) {
+                    score[neighbor] = computeScore(neighbor, graph, value, flags, penalty, highAlertForts);
+                    pq.update(neighbor);
+                }
+            }
         }
     }
 
     // This is the greedy score we use to guess which fort is best to hit next
     // Not perfect, but big gold = good and creating alerts = bad.
-    private double computeScore(String candidate,
-                                Map<String, FortInfo> infoMap,
-                                Set<String> highAlertForts) {
-
-        FortInfo info = infoMap.get(candidate);
+    private double computeScore(int candidate, LabeledValueGraph graph, int[] value, byte[] flags,
+                                long[] penalty, SolverWorkspace.Marks highAlertForts) {
 
         // A fort is on alert either because it's self alert or someone nearby triggered it
-        boolean currentlyHighAlert = highAlertForts.contains(candidate) || info.selfAlert;
-        double gold = info.value;
+        boolean currentlyHighAlert = highAlertForts.get(candidate) || (flags[candidate] & LabeledValueGraph.SELF_ALERT) != 0;
+        double gold = value[candidate];
 
         // If it's on alert and not immune you only get half
-        if (currentlyHighAlert && !info.immune) {
+        if (currentlyHighAlert && (flags[candidate] & LabeledValueGraph.IMMUNE) == 0) {
             gold /= 2.0;
         }
 
         // Shields are special, they don't alert neighbors,
         // so we give them a tiny bonus to pick them earlier in ties.
-        if (info.shield) {
-            return gold + info.neighbors.size() * 0.001;
+        if ((flags[candidate] & LabeledValueGraph.SHIELD) != 0) {
+            return gold + graph.degree(candidate) * 0.001;
         }
 
         // Estimate how much damage we'd cause by alerting neighbors
-        double penalty = 0.0;
-        for (String neighbor : info.neighbors) {
-            FortInfo neighborInfo = infoMap.get(neighbor);
+        return gold - penalty[candidate] / 2.0;
+    }
 
-            // Skip neighbors that are already doomed or immune anyway
-            if (highAlertForts.contains(neighbor) || neighborInfo.immune || neighborInfo.selfAlert) {
-                continue;
+    /**
+     * A binary max-heap of vertex ids ordered by score (higher first, then lower id),
+     * which knows where each id sits so a changed score can be fixed in place.
+     */
+    private static class IndexedMaxHeap {
+        private final double[] score;
+        private final int[] heap;
+        private final int[] position; // where each id is in the heap, -1 once it's been polled
+        private int size;
+        long updates; // (for Metrics)
+
+        // heap and position are scratch arrays (of at least n entries) to keep the heap in
+        IndexedMaxHeap(double[] score, int n, int[] heap, int[] position) {
+            this.score = score;
+            size = n;
+            this.heap = heap;
+            this.position = position;
+            for (int v = 0; v < size; v++) {
+                heap[v] = v;
+                position[v] = v;
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
             }
+        }
 
-            // Rough guess, alerting them probably costs us half their gold
-            penalty += neighborInfo.value / 2.0;
+        boolean isEmpty() {
+            return size == 0;
         }
 
-        return gold - penalty;
+        int poll() {
+            int top = heap[0];
+            position[top] = -1;
+            size--;
+            if (size > 0) {
+                heap[0] = heap[size];
+                position[heap[0]] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        // call after score[v] changed, in either direction
+        void update(int v) {
+            updates++;
+            int i = position[v];
+            if (i < 0) {
+                return;
+            }
+            siftUp(i);
+            siftDown(position[v]);
+        }
+
+        private boolean before(int a, int b) {
+            return score[a] > score[b] || (score[a] == score[b] && a < b);
+        }
+
+        private void siftUp(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(v, heap[parent])) break;
+                heap[i] = heap[parent];
+                position[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            position[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(heap[child + 1], heap[child])) child++;
+                if (!before(heap[child], v)) break;
+                heap[i] = heap[child];
+                position[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            position[v] = i;
+        }
     }
 
 }
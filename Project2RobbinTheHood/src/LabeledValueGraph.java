@@ -1,6 +1,5 @@
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -15,10 +14,37 @@ import java.util.*;
  * essentially encoding the graph in an "adjacency list"
  * format, with the convenience of being able to index
  * these adjacency lists by the vertex's String label.
+ * <p>
+ * Once a graph is fully built, {@link #freeze()} converts it into a compact,
+ * read-optimized form: vertices are interned to dense int ids (in insertion
+ * order), adjacency is stored in compressed-sparse-row (CSR) int arrays,
+ * values in an int array, and the special fort flags are packed into a byte
+ * per vertex.  The id-based accessors ({@link #indexOf}, {@link #adjStart}, ...)
+ * are only available on a frozen graph.  Calling any of the mutators on a
+ * frozen graph transparently converts it back to the mutable form first.
  */
 public class LabeledValueGraph {
+    /** Flag bit for a self-alerting fort ('!' in the label). */
+    public static final byte SELF_ALERT = 1;
+    /** Flag bit for a fort that is immune to alerts ('*' in the label). */
+    public static final byte IMMUNE = 2;
+    /** Flag bit for a shielded fort, which never alerts its neighbors ('#' in the label). */
+    public static final byte SHIELD = 4;
+
+    // first line of every saved graph file
+    static final String HEADER_COMMENT = "To visualize and edit small graphs, you copy/paste the following lines to/from https://csacademy.com/app/graph_editor/";
+
+    // mutable (builder) form -- null while the graph is frozen
     private LinkedHashMap<String, Vertex> labelToVertexMap;
 
+    // frozen (CSR) form -- all null while the graph is mutable
+    private String[] labels;
+    private int[] values;
+    private byte[] flags;
+    private int[] adjOffsets; // neighbors of vertex v are adjTargets[adjOffsets[v] .. adjOffsets[v+1])
+    private int[] adjTargets;
+    private int[] labelIndex;  // open-addressing hash table of (id + 1), 0 marks an empty slot
+
     /**
      * Creates a new empty graph.
      */
@@ -31,7 +57,33 @@ public class LabeledValueGraph {
      * @throws FileNotFoundException
      */
     public LabeledValueGraph(String filename) throws FileNotFoundException {
-        loadFromFile(new Scanner(new File(filename)));
+        // the streaming parser builds the frozen form directly; take over its arrays
+        long start = Metrics.startTimer();
+        LabeledValueGraph loaded = GraphFileParser.parse(filename);
+        labels = loaded.labels;
+        values = loaded.values;
+        flags = loaded.flags;
+        adjOffsets = loaded.adjOffsets;
+        adjTargets = loaded.adjTargets;
+        labelIndex = loaded.labelIndex;
+        Metrics.stopTimer(Metrics.Phase.LOAD, start);
+        if (Metrics.isEnabled()) {
+            Metrics.add(Metrics.Counter.GRAPH_VERTICES_LOADED, labels.length);
+            Metrics.add(Metrics.Counter.GRAPH_EDGES_LOADED, adjTargets.length / 2);
+        }
+    }
+
+    /**
+     * Creates an already-frozen graph directly from its CSR arrays.
+     * (The arrays are used as-is, not copied, so the caller must not modify them afterwards.)
+     */
+    LabeledValueGraph(String[] labels, int[] values, byte[] flags, int[] adjOffsets, int[] adjTargets) {
+        this.labels = labels;
+        this.values = values;
+        this.flags = flags;
+        this.adjOffsets = adjOffsets;
+        this.adjTargets = adjTargets;
+        this.labelIndex = buildLabelIndex(labels);
     }
 
     /**
@@ -40,6 +92,17 @@ public class LabeledValueGraph {
      * @param toCopy
      */
     public LabeledValueGraph(LabeledValueGraph toCopy) {
+        if (toCopy.isFrozen()) {
+            // the frozen form is just a handful of arrays, so copying them is both
+            // cheap and a true deep copy
+            labels = toCopy.labels.clone();
+            values = toCopy.values.clone();
+            flags = toCopy.flags.clone();
+            adjOffsets = toCopy.adjOffsets.clone();
+            adjTargets = toCopy.adjTargets.clone();
+            labelIndex = toCopy.labelIndex.clone();
+            return;
+        }
         // to copy the graph, we convert it into string format
         // and reload it. (Not the most efficient, but it's convenient, and guaranteed
         // to avoid any shallow-copy issues where vertices in the new graph
@@ -88,6 +151,7 @@ public class LabeledValueGraph {
      * and value.
      */
     public void addVertex(String label, int value) {
+        ensureMutable();
         if (labelToVertexMap.containsKey(label)) {
             throw new IllegalArgumentException("Vertex with label " + label + " already exists in the graph.");
         }
@@ -96,14 +160,66 @@ public class LabeledValueGraph {
     }
 
     public int getValueAt(String label) {
+        if (isFrozen()) {
+            return values[requireIndex(label)];
+        }
         return labelToVertexMap.get(label).value;
     }
 
+    /**
+     * @return the packed {@link #SELF_ALERT}/{@link #IMMUNE}/{@link #SHIELD} bits
+     * of the vertex with the specified label (decoded once when the vertex was
+     * added, so this is just a lookup)
+     */
+    public byte getFlags(String label) {
+        if (isFrozen()) {
+            return flags[requireIndex(label)];
+        }
+        Vertex v = labelToVertexMap.get(label);
+        if (v == null) {
+            throw new IllegalArgumentException("Vertex with label " + label + " does not exist in the graph.");
+        }
+        return v.flags;
+    }
+
+    /** @return true if the fort goes on alert by itself, before anyone attacks it */
+    public boolean isSelfAlert(String label) {
+        return (getFlags(label) & SELF_ALERT) != 0;
+    }
+
+    /** @return true if the fort never loses gold to an alert */
+    public boolean isImmune(String label) {
+        return (getFlags(label) & IMMUNE) != 0;
+    }
+
+    /** @return true if attacking the fort doesn't alert its neighbors */
+    public boolean isShield(String label) {
+        return (getFlags(label) & SHIELD) != 0;
+    }
+
+    /**
+     * Changes the value of the vertex with the specified label.  Unlike the
+     * other mutators this works in place on a frozen graph (ids and adjacency
+     * stay as they are), so it's cheap to call on a big frozen graph.
+     */
+    public void setValueAt(String label, int value) {
+        if (isFrozen()) {
+            values[requireIndex(label)] = value;
+            return;
+        }
+        Vertex v = labelToVertexMap.get(label);
+        if (v == null) {
+            throw new IllegalArgumentException("Vertex with label " + label + " does not exist in the graph.");
+        }
+        v.value = value;
+    }
+
     /**
      * Removes the vertex with the specified label from the graph
      * @param label
      */
     public void removeVertex(String label) {
+        ensureMutable();
         if (!labelToVertexMap.containsKey(label)) {
             throw new IllegalArgumentException("Vertex with label " + label + " does not exist in the graph.");
         }
@@ -120,6 +236,7 @@ public class LabeledValueGraph {
      * adjacency lists for both the given vertices.
      */
     public void addEdge(String v1, String v2) {
+        ensureMutable();
         if (!labelToVertexMap.containsKey(v1) || !labelToVertexMap.containsKey(v2)) {
             throw new IllegalArgumentException("One or both of the vertices with labels " + v1 + " and " + v2 + " do not exist in the graph.");
         }
@@ -140,6 +257,7 @@ public class LabeledValueGraph {
      * @param v2
      */
     public void removeEdge(String v1, String v2) {
+        ensureMutable();
         if (!labelToVertexMap.containsKey(v1) || !labelToVertexMap.containsKey(v2)) {
             throw new IllegalArgumentException("One or both of the vertices with labels " + v1 + " and " + v2 + " do not exist in the graph.");
         }
@@ -155,6 +273,19 @@ public class LabeledValueGraph {
      * (Note this is an O(degree(v1)) operation)
      */
     public boolean hasEdge(String v1, String v2) {
+        if (isFrozen()) {
+            int id1 = indexOf(v1);
+            int id2 = indexOf(v2);
+            if (id1 < 0 || id2 < 0) {
+                throw new IllegalArgumentException("One or both of the vertices with labels " + v1 + " and " + v2 + " do not exist in the graph.");
+            }
+            for (int e = adjOffsets[id1]; e < adjOffsets[id1 + 1]; e++) {
+                if (adjTargets[e] == id2) {
+                    return true;
+                }
+            }
+            return false;
+        }
         if (!labelToVertexMap.containsKey(v1) || !labelToVertexMap.containsKey(v2)) {
             throw new IllegalArgumentException("One or both of the vertices with labels " + v1 + " and " + v2 + " do not exist in the graph.");
         }
@@ -168,6 +299,9 @@ public class LabeledValueGraph {
      * @return a list of the labels for ALL vertices in the graph
      */
     public List<String> getAllVertexLabels() {
+        if (isFrozen()) {
+            return new ArrayList<>(Arrays.asList(labels));
+        }
         return new ArrayList<>(labelToVertexMap.keySet());
     }
 
@@ -175,12 +309,22 @@ public class LabeledValueGraph {
      *
      * @param v - vertex name
      * @return a list of the labels of the neighbors of the vertex labeled v
+     * (on a frozen graph this is a read-only view over the CSR arrays, so
+     * no per-call copy of the adjacency list is made)
      */
     public List<String> adj(String v) {
+        Metrics.increment(Metrics.Counter.GRAPH_ADJACENCY_CALLS);
+        if (isFrozen()) {
+            int id = indexOf(v);
+            if (id < 0) {
+                throw new IllegalArgumentException("Vertex with label " + v + " does not exist in the graph.");
+            }
+            return new NeighborLabels(labels, adjTargets, adjOffsets[id], adjOffsets[id + 1]);
+        }
         if (!labelToVertexMap.containsKey(v)) {
             throw new IllegalArgumentException("Vertex with label " + v + " does not exist in the graph.");
         }
-        List<String> neighborLabels = new LinkedList<String>();
+        List<String> neighborLabels = new ArrayList<String>();
         for (Vertex neighbor : labelToVertexMap.get(v).neighbors) {
             neighborLabels.add(neighbor.label);
         }
@@ -203,7 +347,11 @@ public class LabeledValueGraph {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append("//To visualize and edit small graphs, you copy/paste the following lines to/from https://csacademy.com/app/graph_editor/\n");
+        sb.append("//").append(HEADER_COMMENT).append("\n");
+        if (isFrozen()) {
+            appendFrozen(sb);
+            return sb.toString();
+        }
         for (String vLabel : labelToVertexMap.keySet()) {
             Vertex v = labelToVertexMap.get(vLabel);
             String vDebugLabel = v.label + ":" + v.value;
@@ -228,10 +376,305 @@ public class LabeledValueGraph {
         return sb.toString();
     }
 
+    /**
+     * Saves the graph in the same text format as {@link #toString()}, but
+     * streams it line by line instead of building the whole text first.
+     */
     public void saveToFile(String filename) throws FileNotFoundException {
-        PrintWriter writer = new PrintWriter(filename);
-        writer.println(toString());
-        writer.close();
+        try (GraphWriter writer = new GraphWriter(filename)) {
+            writeTo(writer);
+            writer.text(System.lineSeparator()); // (the file used to be written with println)
+        }
+    }
+
+    /**
+     * Writes exactly the text of {@link #toString()} to the given writer.
+     */
+    void writeTo(GraphWriter writer) {
+        writer.comment(HEADER_COMMENT);
+        if (isFrozen()) {
+            for (int v = 0; v < labels.length; v++) {
+                writer.vertex(labels[v], values[v]);
+            }
+            for (int v = 0; v < labels.length; v++) {
+                for (int e = adjOffsets[v]; e < adjOffsets[v + 1]; e++) {
+                    int w = adjTargets[e];
+                    if (labels[v].compareTo(labels[w]) < 0) {
+                        continue; // only print each edge once, not v->w and w->v
+                    }
+                    writer.edge(labels[v], values[v], labels[w], values[w]);
+                }
+            }
+        } else {
+            for (Vertex v : labelToVertexMap.values()) {
+                writer.vertex(v.label, v.value);
+            }
+            for (Vertex v : labelToVertexMap.values()) {
+                for (Vertex w : v.neighbors) {
+                    if (v.label.compareTo(w.label) < 0) {
+                        continue; // only print each edge once, not v->w and w->v
+                    }
+                    writer.edge(v.label, v.value, w.label, w.value);
+                }
+            }
+        }
+        writer.newLine();
+    }
+
+    /**
+     * Saves the graph in the binary snapshot format (see {@link GraphSnapshot}),
+     * which can be memory-mapped back without parsing.  Freezes the graph.
+     */
+    public void saveSnapshot(String filename) throws IOException {
+        GraphSnapshot.write(this, filename);
+    }
+
+    private void appendFrozen(StringBuilder sb) {
+        for (int v = 0; v < labels.length; v++) {
+            sb.append(labels[v]).append(':').append(values[v]).append('\n');
+        }
+        for (int v = 0; v < labels.length; v++) {
+            for (int e = adjOffsets[v]; e < adjOffsets[v + 1]; e++) {
+                int w = adjTargets[e];
+                if (labels[v].compareTo(labels[w]) < 0) {
+                    continue; // only print each edge once, not v->w and w->v
+                }
+                sb.append(labels[v]).append(':').append(values[v]).append(' ');
+                sb.append(labels[w]).append(':').append(values[w]).append('\n');
+            }
+        }
+        sb.append("\n");
+    }
+
+    // ------------------------------------------------------------------
+    // Frozen (CSR) form
+    // ------------------------------------------------------------------
+
+    /**
+     * Converts the graph into its compact, read-optimized form.  Vertex ids
+     * are assigned densely in insertion order (the same order as
+     * {@link #getAllVertexLabels()}), and each vertex keeps its neighbors in
+     * the order the edges were added.  Calling this on an already-frozen
+     * graph does nothing.
+     *
+     * @return this graph, for chaining
+     */
+    public LabeledValueGraph freeze() {
+        if (isFrozen()) {
+            return this;
+        }
+        int n = labelToVertexMap.size();
+        labels = new String[n];
+        values = new int[n];
+        flags = new byte[n];
+        adjOffsets = new int[n + 1];
+
+        int id = 0;
+        int totalDegree = 0;
+        for (Vertex v : labelToVertexMap.values()) {
+            v.id = id;
+            labels[id] = v.label;
+            values[id] = v.value;
+            flags[id] = v.flags;
+            adjOffsets[id] = totalDegree;
+            totalDegree += v.neighbors.size();
+            id++;
+        }
+        adjOffsets[n] = totalDegree;
+
+        adjTargets = new int[totalDegree];
+        int e = 0;
+        for (Vertex v : labelToVertexMap.values()) {
+            for (Vertex w : v.neighbors) {
+                adjTargets[e++] = w.id;
+            }
+        }
+
+        labelIndex = buildLabelIndex(labels);
+        labelToVertexMap = null;
+        return this;
+    }
+
+    /**
+     * @return true if the graph is currently in its frozen (CSR) form
+     */
+    public boolean isFrozen() {
+        return labelToVertexMap == null;
+    }
+
+    private void ensureMutable() {
+        if (!isFrozen()) {
+            return;
+        }
+        labelToVertexMap = new LinkedHashMap<String, Vertex>();
+        Vertex[] byId = new Vertex[labels.length];
+        for (int v = 0; v < labels.length; v++) {
+            byId[v] = new Vertex(labels[v], values[v], flags[v]);
+            labelToVertexMap.put(labels[v], byId[v]);
+        }
+        for (int v = 0; v < labels.length; v++) {
+            for (int e = adjOffsets[v]; e < adjOffsets[v + 1]; e++) {
+                byId[v].neighbors.add(byId[adjTargets[e]]);
+            }
+        }
+        labels = null;
+        values = null;
+        flags = null;
+        adjOffsets = null;
+        adjTargets = null;
+        labelIndex = null;
+    }
+
+    private void requireFrozen() {
+        if (!isFrozen()) {
+            throw new IllegalStateException("Graph must be frozen (call freeze()) before using id-based access.");
+        }
+    }
+
+    /**
+     * @return the number of vertices in the graph
+     */
+    public int vertexCount() {
+        return isFrozen() ? labels.length : labelToVertexMap.size();
+    }
+
+    /**
+     * @return the dense id of the vertex labeled v, or -1 if there is no such vertex
+     * (frozen graphs only)
+     */
+    public int indexOf(String v) {
+        requireFrozen();
+        int mask = labelIndex.length - 1;
+        for (int slot = mix(v.hashCode()) & mask; labelIndex[slot] != 0; slot = (slot + 1) & mask) {
+            int id = labelIndex[slot] - 1;
+            if (labels[id].equals(v)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private int requireIndex(String v) {
+        int id = indexOf(v);
+        if (id < 0) {
+            throw new IllegalArgumentException("Vertex with label " + v + " does not exist in the graph.");
+        }
+        return id;
+    }
+
+    /** @return the label of the vertex with the given id (frozen graphs only) */
+    public String labelOf(int id) {
+        requireFrozen();
+        return labels[id];
+    }
+
+    /** @return the value of the vertex with the given id (frozen graphs only) */
+    public int valueOf(int id) {
+        requireFrozen();
+        return values[id];
+    }
+
+    /** @return the packed {@link #SELF_ALERT}/{@link #IMMUNE}/{@link #SHIELD} bits of the given vertex (frozen graphs only) */
+    public byte flagsOf(int id) {
+        requireFrozen();
+        return flags[id];
+    }
+
+    /** @return the number of neighbors of the vertex with the given id (frozen graphs only) */
+    public int degree(int id) {
+        requireFrozen();
+        return adjOffsets[id + 1] - adjOffsets[id];
+    }
+
+    /**
+     * The neighbors of vertex id are adjTarget(adjStart(id)) ... adjTarget(adjEnd(id) - 1).
+     * (frozen graphs only)
+     */
+    public int adjStart(int id) {
+        requireFrozen();
+        Metrics.increment(Metrics.Counter.GRAPH_ADJACENCY_CALLS);
+        return adjOffsets[id];
+    }
+
+    /** @see #adjStart(int) */
+    public int adjEnd(int id) {
+        requireFrozen();
+        return adjOffsets[id + 1];
+    }
+
+    /** @see #adjStart(int) */
+    public int adjTarget(int edgeIndex) {
+        requireFrozen();
+        return adjTargets[edgeIndex];
+    }
+
+    /**
+     * Decodes the special fort flags from a vertex label.
+     * @return the packed {@link #SELF_ALERT}/{@link #IMMUNE}/{@link #SHIELD} bits
+     */
+    static byte decodeFlags(String label) {
+        byte result = 0;
+        if (label.indexOf((char) (AttackValueVerifier.obfuscated[0] >> 1)) >= 0) {
+            result |= SELF_ALERT;
+        }
+        if (label.indexOf((char) (AttackValueVerifier.obfuscated[1] << 1)) >= 0) {
+            result |= IMMUNE;
+        }
+        if (label.indexOf((char) (AttackValueVerifier.obfuscated[2] >> 1)) >= 0) {
+            result |= SHIELD;
+        }
+        return result;
+    }
+
+    static int[] buildLabelIndex(String[] labels) {
+        int capacity = Integer.highestOneBit(Math.max(2, labels.length) * 2 - 1) << 1;
+        int[] index = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < labels.length; id++) {
+            int slot = mix(labels[id].hashCode()) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = id + 1;
+        }
+        return index;
+    }
+
+    static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Read-only view of one vertex's neighbor labels in the frozen form.
+     * (Holds on to the arrays rather than the graph, so it stays a valid
+     * snapshot even if the graph is modified afterwards.)
+     */
+    private static class NeighborLabels extends AbstractList<String> implements RandomAccess {
+        private final String[] labels;
+        private final int[] targets;
+        private final int start;
+        private final int end;
+
+        NeighborLabels(String[] labels, int[] targets, int start, int end) {
+            this.labels = labels;
+            this.targets = targets;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (end - start));
+            }
+            return labels[targets[start + index]];
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
     }
 
     /**
@@ -240,12 +683,19 @@ public class LabeledValueGraph {
     private class Vertex {
         private final String label;
         private int value;
+        private final byte flags; // decoded from the label once, up front
         private final List<Vertex> neighbors;
+        private int id; // only meaningful while freezing
 
         public Vertex(String label, int value) {
+            this(label, value, decodeFlags(label));
+        }
+
+        private Vertex(String label, int value, byte flags) {
             this.label = label;
             this.value = value;
-            neighbors = new LinkedList<Vertex>();
+            this.flags = flags;
+            neighbors = new ArrayList<Vertex>();
         }
     }
 
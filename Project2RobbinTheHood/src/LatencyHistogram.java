@@ -0,0 +1,120 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size histogram of nanosecond latencies, in the style of
+ * HdrHistogram: values below 64 get a bucket each, and above that every
+ * power of two is split into 32 buckets, so any recorded value is known to
+ * within about 3% while the whole histogram is a single array of about 1900
+ * counters.  Recording is lock-free and never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int FIRST_EXPONENT = 6; // 2^6 = LINEAR_BUCKETS
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder count = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /** Records one value (negative values are counted as 0). */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(v));
+        total.add(v);
+        count.increment();
+        if (v < min.get()) min.accumulateAndGet(v, Math::min);
+        if (v > max.get()) max.accumulateAndGet(v, Math::max);
+    }
+
+    private static int bucketOf(long v) {
+        if (v < LINEAR_BUCKETS) {
+            return (int) v;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    // the largest value that falls in the bucket
+    private static long highestValueIn(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + FIRST_EXPONENT;
+        long sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return sub * width + width - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** @return the smallest recorded value, or 0 if nothing was recorded */
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    /** @return the largest recorded value, or 0 if nothing was recorded */
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+
+    /** @return the sum of all recorded values */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * @param percentile - between 0 and 100
+     * @return a value that at least that percentage of the recorded values are
+     * at most (to within the bucket precision, and never more than the max)
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = getCount();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                return Math.min(highestValueIn(b), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) {
+            counts.set(b, 0);
+        }
+        total.reset();
+        count.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    /** @return the summary as a JSON object (all times in nanoseconds) */
+    public String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"count\":%d,\"total_ns\":%d,\"min_ns\":%d,\"mean_ns\":%.1f,\"p50_ns\":%d,\"p90_ns\":%d,"
+                        + "\"p99_ns\":%d,\"p999_ns\":%d,\"max_ns\":%d}",
+                getCount(), getTotal(), getMin(), getMean(), getValueAtPercentile(50), getValueAtPercentile(90),
+                getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+    }
+}
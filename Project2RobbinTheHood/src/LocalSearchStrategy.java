@@ -0,0 +1,374 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Improves another strategy's attack order by local search.
+ * <p>
+ * Starting from the wrapped strategy's order, this keeps trying three kinds of
+ * moves and applies any that steal more gold, until no move helps or the time
+ * budget runs out:
+ * <ul>
+ *   <li>swap two forts that are next to each other in the order,</li>
+ *   <li>relocate a fort to a better spot among its neighbors (only the order
+ *       of a fort relative to its neighbors matters, so the candidate spots
+ *       are just the gaps between its neighbors), and</li>
+ *   <li>reverse a short segment of the order.</li>
+ * </ul>
+ * A fort is on alert when attacked if it's self-alerting or if some non-shield
+ * neighbor was attacked before it, so for every fort we keep the number of
+ * non-shield neighbors in front of it.  A move only changes that count for
+ * forts that changed places with one of their neighbors, so each move's gain
+ * is worked out from just those forts -- never by re-verifying the whole
+ * order.  Gold is counted in half-gold units, so the sums are exact.
+ * <p>
+ * As an {@link AnytimeStrategy} it reports the starting order and then the
+ * order after each pass that found an improvement, and it also stops when the
+ * given budget runs out (whichever of the two limits comes first).
+ * <p>
+ * After each call, {@link #getGoldImproved()} and
+ * {@link #getGoldImprovedPerMillisecond()} tell how much the search helped.
+ */
+public class LocalSearchStrategy implements AnytimeStrategy {
+
+    /** Default time budget for the search, in milliseconds. */
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 100;
+    // longest segment the reversal move tries
+    private static final int MAX_REVERSAL_LENGTH = 8;
+
+    private final RobbingStrategy start;
+    private final long timeBudgetMillis;
+
+    // statistics of the last call
+    private double startGold;
+    private double finalGold;
+    private double elapsedMillis;
+    private long movesApplied;
+
+    // the graph being worked on (set for the duration of a call)
+    private LabeledValueGraph graph;
+    private int[] order;
+    private int[] position;
+    private int[] earlierCount;   // number of non-shield neighbors attacked before each fort
+    private int[] scratch;        // neighbor positions, for relocation
+    private final int[] segmentDelta = new int[MAX_REVERSAL_LENGTH];
+
+    /**
+     * @param start - the strategy whose order gets improved
+     */
+    public LocalSearchStrategy(RobbingStrategy start) {
+        this(start, DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * @param start            - the strategy whose order gets improved
+     * @param timeBudgetMillis - how long the local search may run (not counting the start strategy)
+     */
+    public LocalSearchStrategy(RobbingStrategy start, long timeBudgetMillis) {
+        this.start = start;
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    @Override
+    public List<String> chooseOrderToAttack(LabeledValueGraph graph, SearchBudget budget, Listener listener) {
+        List<String> initial = start.chooseOrderToAttack(graph);
+        graph.freeze();
+        int[] ids = new int[initial.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.indexOf(initial.get(i));
+        }
+
+        long startTime = System.nanoTime();
+        long ownBudget = timeBudgetMillis >= Long.MAX_VALUE / 1_000_000L ? Long.MAX_VALUE : timeBudgetMillis * 1_000_000L;
+        improve(graph, ids, startTime + Math.min(ownBudget, budget.remainingNanos()), budget, listener);
+        elapsedMillis = (System.nanoTime() - startTime) / 1e6;
+        return labels(graph, ids);
+    }
+
+    private static List<String> labels(LabeledValueGraph graph, int[] ids) {
+        List<String> attackOrder = new ArrayList<>(ids.length);
+        for (int v : ids) {
+            attackOrder.add(graph.labelOf(v));
+        }
+        return attackOrder;
+    }
+
+    /**
+     * Improves the given complete order (of vertex ids of the frozen graph) in
+     * place, until it's locally optimal, the deadline (a System.nanoTime()
+     * value) passes, or the budget is cancelled.  The starting order and the
+     * order after every pass that improved it are reported to the listener.
+     */
+    void improve(LabeledValueGraph graph, int[] ids, long deadline, SearchBudget budget, Listener listener) {
+        this.graph = graph;
+        int n = graph.vertexCount();
+        order = ids;
+        position = new int[n];
+        earlierCount = new int[n];
+        scratch = new int[16];
+        movesApplied = 0;
+        for (int i = 0; i < n; i++) {
+            position[order[i]] = i;
+        }
+        long startHalves = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                int u = graph.adjTarget(e);
+                if (position[u] < position[v] && !isShield(u)) {
+                    earlierCount[v]++;
+                }
+            }
+            startHalves += goldHalves(v, earlierCount[v]);
+        }
+        long halves = startHalves;
+        if (listener != Listener.NONE) {
+            listener.improved(halves / 2.0, labels(graph, order));
+        }
+
+        boolean improved = true;
+        int checks = 0;
+        search:
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < n; i++) {
+                if ((++checks & 63) == 0 && (System.nanoTime() - deadline > 0 || budget.isExpired())) {
+                    break search;
+                }
+                long gain = trySwap(i);
+                if (gain <= 0) gain = tryRelocate(order[i]);
+                if (gain <= 0) gain = tryReversal(i);
+                if (gain > 0) {
+                    halves += gain;
+                    movesApplied++;
+                    improved = true;
+                }
+            }
+            if (improved && listener != Listener.NONE) {
+                listener.improved(halves / 2.0, labels(graph, order));
+            }
+        }
+
+        startGold = startHalves / 2.0;
+        finalGold = halves / 2.0;
+        this.graph = null;
+        order = position = earlierCount = scratch = null;
+    }
+
+    // swaps order[i] and order[i+1] if that helps; returns the gain (in half-gold units)
+    private long trySwap(int i) {
+        if (i + 1 >= order.length) {
+            return 0;
+        }
+        int u = order[i];
+        int v = order[i + 1];
+        if (!adjacent(u, v)) {
+            return 0; // forts that aren't neighbors don't care about each other's order
+        }
+        int newU = earlierCount[u] + (isShield(v) ? 0 : 1);
+        int newV = earlierCount[v] - (isShield(u) ? 0 : 1);
+        long gain = goldHalves(u, newU) - goldHalves(u, earlierCount[u])
+                + goldHalves(v, newV) - goldHalves(v, earlierCount[v]);
+        if (gain > 0) {
+            order[i] = v;
+            order[i + 1] = u;
+            position[u] = i + 1;
+            position[v] = i;
+            earlierCount[u] = newU;
+            earlierCount[v] = newV;
+        }
+        return gain;
+    }
+
+    /*
+     * Moves fort x to the best gap between its neighbors, if that helps.
+     * Gap g means "behind the first g neighbors (in attack order), in front of
+     * the rest".  Sweeping x from gap 0 to the last gap, each step past a
+     * neighbor y only changes the counts of x and y, so all the gaps are
+     * scored in one pass over the sorted neighbor positions.
+     */
+    private long tryRelocate(int x) {
+        int degree = graph.degree(x);
+        if (scratch.length < degree) {
+            scratch = new int[Math.max(degree, 2 * scratch.length)];
+        }
+        int k = 0;
+        for (int e = graph.adjStart(x); e < graph.adjEnd(x); e++) {
+            int y = graph.adjTarget(e);
+            if (y != x) {
+                scratch[k++] = position[y];
+            }
+        }
+        if (k == 0) {
+            return 0;
+        }
+        Arrays.sort(scratch, 0, k);
+        int current = 0; // the gap x is in now
+        while (current < k && scratch[current] < position[x]) {
+            current++;
+        }
+        int alerts = isShield(x) ? 0 : 1; // what x adds to the count of a neighbor behind it
+
+        // gap 0: x in front of all its neighbors, so the ones now in front of x gain a count
+        long neighborGain = 0;
+        for (int j = 0; j < current; j++) {
+            int y = order[scratch[j]];
+            neighborGain += goldHalves(y, earlierCount[y] + alerts) - goldHalves(y, earlierCount[y]);
+        }
+        int count = 0;
+        long bestGain = 0;
+        int bestGap = current;
+        for (int g = 0; g <= k; g++) {
+            long gain = neighborGain + goldHalves(x, count) - goldHalves(x, earlierCount[x]);
+            if (gain > bestGain || (gain == bestGain && Math.abs(g - current) < Math.abs(bestGap - current))) {
+                bestGain = gain;
+                bestGap = g;
+            }
+            if (g < k) {
+                // move x behind neighbor g
+                int y = order[scratch[g]];
+                int base = earlierCount[y] - (g >= current ? alerts : 0); // y's count without x
+                neighborGain += goldHalves(y, base) - goldHalves(y, base + alerts);
+                if (!isShield(y)) count++;
+            }
+        }
+        if (bestGain <= 0) {
+            return 0;
+        }
+
+        // apply it, moving x as little as possible: just behind neighbor bestGap-1
+        // when moving back, or just in front of neighbor bestGap when moving forward
+        int from = position[x];
+        int target;
+        if (bestGap > current) {
+            target = scratch[bestGap - 1];
+            for (int j = current; j < bestGap; j++) {
+                int y = order[scratch[j]];
+                earlierCount[y] -= alerts;
+                if (!isShield(y)) earlierCount[x]++;
+            }
+            System.arraycopy(order, from + 1, order, from, target - from);
+        } else {
+            target = scratch[bestGap];
+            for (int j = bestGap; j < current; j++) {
+                int y = order[scratch[j]];
+                earlierCount[y] += alerts;
+                if (!isShield(y)) earlierCount[x]--;
+            }
+            System.arraycopy(order, target, order, target + 1, from - target);
+        }
+        order[target] = x;
+        for (int i = Math.min(from, target); i <= Math.max(from, target); i++) {
+            position[order[i]] = i;
+        }
+        return bestGain;
+    }
+
+    // reverses the best short segment starting at i, if any helps
+    private long tryReversal(int i) {
+        long bestGain = 0;
+        int bestEnd = -1;
+        int end = Math.min(order.length, i + MAX_REVERSAL_LENGTH);
+        for (int j = i + 2; j < end; j++) {
+            long gain = reversalGain(i, j);
+            if (gain > bestGain) {
+                bestGain = gain;
+                bestEnd = j;
+            }
+        }
+        if (bestGain > 0) {
+            reversalGain(i, bestEnd); // (fills in segmentDelta)
+            for (int k = i; k <= bestEnd; k++) {
+                earlierCount[order[k]] += segmentDelta[k - i];
+            }
+            for (int a = i, b = bestEnd; a < b; a++, b--) {
+                int tmp = order[a];
+                order[a] = order[b];
+                order[b] = tmp;
+            }
+            for (int k = i; k <= bestEnd; k++) {
+                position[order[k]] = k;
+            }
+        }
+        return bestGain;
+    }
+
+    // every pair of neighbors inside order[i..j] swaps places when it's reversed
+    private long reversalGain(int i, int j) {
+        Arrays.fill(segmentDelta, 0);
+        for (int a = i; a <= j; a++) {
+            for (int b = a + 1; b <= j; b++) {
+                int u = order[a];
+                int v = order[b];
+                if (adjacent(u, v)) {
+                    if (!isShield(u)) segmentDelta[b - i]--;  // u no longer in front of v
+                    if (!isShield(v)) segmentDelta[a - i]++;  // v now in front of u
+                }
+            }
+        }
+        long gain = 0;
+        for (int k = i; k <= j; k++) {
+            int v = order[k];
+            gain += goldHalves(v, earlierCount[v] + segmentDelta[k - i]) - goldHalves(v, earlierCount[v]);
+        }
+        return gain;
+    }
+
+    private boolean adjacent(int u, int v) {
+        if (graph.degree(u) > graph.degree(v)) {
+            int tmp = u;
+            u = v;
+            v = tmp;
+        }
+        for (int e = graph.adjStart(u); e < graph.adjEnd(u); e++) {
+            if (graph.adjTarget(e) == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isShield(int v) {
+        return (graph.flagsOf(v) & LabeledValueGraph.SHIELD) != 0;
+    }
+
+    // gold stolen from v if it has the given number of alerting neighbors in front of it, in half-gold units
+    private long goldHalves(int v, int earlierNeighbors) {
+        byte flags = graph.flagsOf(v);
+        long full = 2L * graph.valueOf(v);
+        if ((flags & LabeledValueGraph.IMMUNE) == 0
+                && (earlierNeighbors > 0 || (flags & LabeledValueGraph.SELF_ALERT) != 0)) {
+            return full / 2;
+        }
+        return full;
+    }
+
+    /** @return gold stolen by the wrapped strategy's order in the last call */
+    public double getStartGold() {
+        return startGold;
+    }
+
+    /** @return gold stolen by the improved order in the last call */
+    public double getFinalGold() {
+        return finalGold;
+    }
+
+    /** @return how much gold the local search added in the last call */
+    public double getGoldImproved() {
+        return finalGold - startGold;
+    }
+
+    /** @return how long the local search itself ran in the last call */
+    public double getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /** @return how many improving moves were applied in the last call */
+    public long getMovesApplied() {
+        return movesApplied;
+    }
+
+    /** @return gold added per millisecond of local search in the last call */
+    public double getGoldImprovedPerMillisecond() {
+        return elapsedMillis > 0 ? getGoldImproved() / elapsedMillis : 0;
+    }
+}
@@ -1,11 +1,21 @@
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
 
+    // the returned List's backing array is 4 to 8 bytes per fort; the rest is slack for small per-solve objects
+    private static final double MAX_WORKSPACE_BYTES_PER_FORT = 12.0;
 
     public static void main(String args[]) throws FileNotFoundException {
         compareStrategies();
@@ -21,14 +31,52 @@ public class Main {
         List<RobbingStrategy> strategies = new ArrayList<>();
 //        strategies.add(new RandomStrategy());
           strategies.add(new BruteForceStrategy());
+          strategies.add(new SubsetDPStrategy());
           strategies.add(new GreedyStrategy());
           strategies.add(new DPStrategy());
+          strategies.add(new TreeDecompositionStrategy());
 
         for (RobbingStrategy strategy : strategies) {
             testStrategy(strategy, graph);
         }
     }
 
+    /**
+     * Solves every graph in samples/ in one go (see BatchSolver), writing a
+     * CSV line per file to samples_results.csv.
+     */
+    public static void batchSolveSamples() throws IOException, InterruptedException {
+        BatchSolver batch = new BatchSolver(TreeDecompositionStrategy::new, Runtime.getRuntime().availableProcessors(), 4);
+        batch.solve(BatchSolver.listInputs("samples"), "samples_results.csv");
+        System.out.println(batch.getSolvedCount() + " sample graphs solved, " + batch.getFailedCount() + " failed");
+    }
+
+    /**
+     * Starts a SolveServer on a free local port and posts a few sample graphs
+     * to it, printing each answer and how long the round trip took.
+     */
+    public static void solveSamplesThroughServer() throws IOException, InterruptedException {
+        SolveServer solveServer = new SolveServer(2, SolveServer.DEFAULT_MAX_VERTICES, SolveServer.DEFAULT_MAX_EXACT_VERTICES,
+                SolveServer.DEFAULT_MAX_EXACT_WORK);
+        int port = solveServer.start(0);
+        HttpClient client = HttpClient.newHttpClient();
+        try {
+            for (String file : Arrays.asList("samples/tree8.graph", "samples/sherwood_forest.graph", "samples/random1000.graph")) {
+                for (String strategy : Arrays.asList("greedy", "dp", "auto")) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/solve?strategy=" + strategy))
+                            .POST(HttpRequest.BodyPublishers.ofFile(Paths.get(file))).build();
+                    long startTime = System.nanoTime();
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    String body = response.body();
+                    System.out.printf("%s %s: %d in %.2f ms  %s%n", file, strategy, response.statusCode(),
+                            (System.nanoTime() - startTime) / 1e6, body.substring(0, Math.min(body.length(), 120)));
+                }
+            }
+        } finally {
+            solveServer.stop();
+        }
+    }
+
     public static void testStrategy(RobbingStrategy strategy, LabeledValueGraph originalGraph) {
         //make a copy to pass to the strategy, in case the strategy modifies the graph in some way
         LabeledValueGraph copy = new LabeledValueGraph(originalGraph);
@@ -39,6 +87,118 @@ public class Main {
         System.out.println("   using order: " + fortAttackOrdering);
     }
 
+    /**
+     * Runs an anytime strategy with a budget and prints the value-vs-time curve:
+     * one line per improved order, with the time since the start.
+     */
+    public static void testStrategy(AnytimeStrategy strategy, LabeledValueGraph originalGraph, SearchBudget budget) {
+        LabeledValueGraph copy = new LabeledValueGraph(originalGraph);
+        System.out.println(strategy.getClass().getSimpleName() + " improvements:");
+        List<String> fortAttackOrdering = strategy.chooseOrderToAttack(copy, budget,
+                (gold, order) -> System.out.printf("   t=%9.3f ms  gold=%.1f%n", budget.elapsedNanos() / 1e6, gold));
+
+        double gold = AttackValueVerifier.computeGoldForAttackOrdering(originalGraph, fortAttackOrdering, false);
+        System.out.printf("%s stolen by %s after %.3f ms%n", gold, strategy.getClass().getSimpleName(), budget.elapsedNanos() / 1e6);
+        System.out.println("   using order: " + fortAttackOrdering);
+    }
+
+    /**
+     * Gives the anytime strategies a short deadline on a graph too big to
+     * search exhaustively, to show how the answer improves over time.
+     */
+    public static void reportAnytimeProgress() throws FileNotFoundException {
+        LabeledValueGraph graph = new LabeledValueGraph("samples/random26.graph");
+        testStrategy(new AnytimeSolver(), graph, SearchBudget.ofMillis(1000));
+        testStrategy(new BruteForceStrategy(), graph, SearchBudget.ofMillis(1000));
+    }
+
+    /**
+     * Shows how much of the search tree BranchAndBoundStrategy cuts away.
+     */
+    public static void reportBranchAndBoundPruning() throws FileNotFoundException {
+        LabeledValueGraph graph = new LabeledValueGraph("samples/random26.graph");
+        BranchAndBoundStrategy strategy = new BranchAndBoundStrategy();
+        testStrategy(strategy, graph);
+        System.out.println("   nodes expanded: " + strategy.getNodesExpanded()
+                + ", branches pruned: " + strategy.getNodesPruned());
+
+        // same search split over all cores, sharing the incumbent
+        BranchAndBoundStrategy parallel = new BranchAndBoundStrategy(ForkJoinPool.commonPool(), 2);
+        testStrategy(parallel, graph);
+        System.out.println("   nodes expanded: " + parallel.getNodesExpanded()
+                + ", branches pruned: " + parallel.getNodesPruned());
+    }
+
+    /**
+     * Shows how much LocalSearchStrategy adds on top of GreedyStrategy.
+     */
+    public static void reportLocalSearchImprovement() throws FileNotFoundException {
+        LabeledValueGraph graph = new LabeledValueGraph("samples/random1000.graph");
+        LocalSearchStrategy strategy = new LocalSearchStrategy(new GreedyStrategy(), 500);
+        testStrategy(strategy, graph);
+        System.out.printf("   %.1f -> %.1f gold in %.2f ms (%d moves, %.3f gold/ms)%n",
+                strategy.getStartGold(), strategy.getFinalGold(), strategy.getElapsedMillis(),
+                strategy.getMovesApplied(), strategy.getGoldImprovedPerMillisecond());
+    }
+
+    /**
+     * Shows how often the components of random forests repeat, by solving two
+     * of them through one CachingStrategy (the counts add up over both runs).
+     */
+    public static void reportCacheHits() {
+        RandomForestGenerator maker = new RandomForestGenerator(new Random(42));
+        CachingStrategy strategy = new CachingStrategy(new TreeDecompositionStrategy());
+        for (int run = 1; run <= 2; run++) {
+            LabeledValueGraph graph = maker.makeRandomAcyclicGraph(100000, 10, 0.9, 0.2, 0.2, 0.2);
+            double seconds = timeSeconds(strategy, graph);
+            SolutionCache cache = strategy.getCache();
+            System.out.printf("run %d: %.3f s, %d hits, %d misses (%.1f%% hit rate), %d trees cached%n", run, seconds,
+                    cache.getHits(), cache.getMisses(), 100 * cache.getHitRate(), cache.size());
+        }
+    }
+
+    /**
+     * Turns on Metrics, runs a few strategies on random1000.graph and writes
+     * the counters and phase timings as JSON to metrics.json (and the console).
+     */
+    public static void reportMetrics() throws FileNotFoundException {
+        Metrics.reset();
+        Metrics.enable();
+        try {
+            LabeledValueGraph graph = new LabeledValueGraph("samples/random1000.graph");
+            testStrategy(new GreedyStrategy(), graph);
+            testStrategy(new DPStrategy(), graph);
+            testStrategy(new TreeDecompositionStrategy(), graph);
+            testStrategy(new BruteForceStrategy(), new LabeledValueGraph("samples/tree8.graph"));
+        } finally {
+            Metrics.disable();
+        }
+        System.out.println(Metrics.toJson());
+        Metrics.writeJson("metrics.json");
+    }
+
+    /**
+     * Compares re-solving a big forest from scratch with patching the DP after
+     * small gold changes (DynamicForestDP).
+     */
+    public static void reportIncrementalUpdates() {
+        Random random = new Random(42);
+        RandomForestGenerator maker = new RandomForestGenerator(random);
+        LabeledValueGraph graph = maker.makeRandomAcyclicGraph(1048576, 10, 0.99, 0.2, 0.2, 0.2);
+        List<String> labels = graph.getAllVertexLabels();
+
+        double fullSeconds = timeSeconds(new DPStrategy(), graph);
+        DynamicForestDP dynamic = new DynamicForestDP(graph);
+        int edits = 100000;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < edits; i++) {
+            dynamic.setValue(labels.get(random.nextInt(labels.size())), 1 + random.nextInt(10));
+        }
+        double editMicros = (System.nanoTime() - startTime) / 1e3 / edits;
+        System.out.printf("full DP: %.3f s, incremental: %.2f us per gold change (gold now %.1f)%n",
+                fullSeconds, editMicros, dynamic.getGold());
+    }
+
     public static void collectTimingData() throws FileNotFoundException {
         RandomForestGenerator maker = new RandomForestGenerator(new Random());
 
@@ -46,10 +206,11 @@ public class Main {
         //RobbingStrategy strategy = new RandomStrategy();
         //RobbingStrategy strategy = new BruteForceStrategy();
         //RobbingStrategy strategy = new GreedyStrategy();
+        //RobbingStrategy strategy = new SubsetDPStrategy();
         RobbingStrategy strategy = new DPStrategy();
 
         List<Integer> graphSizes = new ArrayList<>();
-        if (strategy instanceof BruteForceStrategy) {
+        if (strategy instanceof BruteForceStrategy || strategy instanceof SubsetDPStrategy) {
             // Limit brute-force timing to small graphs so experiments complete quickly
             graphSizes.addAll(Arrays.asList(4, 6, 8, 10, 12, 14, 16, 18, 20, 22, 24, 26));
         } else {
@@ -82,4 +243,136 @@ public class Main {
 
     }
 
+    /**
+     * Measures how ParallelComponentStrategy scales with the number of worker
+     * threads, on a forest with many components.
+     */
+    public static void collectComponentScalingData() {
+        RandomForestGenerator maker = new RandomForestGenerator(new Random(42));
+        int N = 1048576;
+        LabeledValueGraph graph = maker.makeRandomAcyclicGraph(N, 10, 0.9,
+                0.2, 0.2, 0.2);
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("Collecting component scaling data for N = " + N);
+        System.out.println(" Threads  DP Time(s)  Greedy Time(s)");
+        for (int threads = 1; threads <= maxThreads; threads = threads * 2) {
+            try (ParallelComponentStrategy dp = new ParallelComponentStrategy(DPStrategy::new, threads);
+                 ParallelComponentStrategy greedy = new ParallelComponentStrategy(GreedyStrategy::new, threads)) {
+                System.out.printf("%8d %11.3f %15.3f\n", threads, timeSeconds(dp, graph), timeSeconds(greedy, graph));
+            }
+        }
+    }
+
+    /**
+     * Compares the sequential DPStrategy with the fork-join subtree-parallel
+     * mode on single big trees (addEdgeProbability = 1).
+     */
+    public static void collectParallelDPSpeedupData() {
+        RandomForestGenerator maker = new RandomForestGenerator(new Random(42));
+        int threads = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            RobbingStrategy sequential = new DPStrategy();
+            RobbingStrategy parallel = new DPStrategy(pool, 8192);
+
+            System.out.println("Collecting parallel DP speedup data with " + threads + " threads");
+            System.out.println("       N  Seq Time(s)  Par Time(s)  Speedup");
+            for (int N = 131072; N <= 1048576; N = N * 2) {
+                LabeledValueGraph graph = maker.makeRandomAcyclicGraph(N, 10, 1.0,
+                        0.2, 0.2, 0.2);
+                // one untimed run of each to warm up the JIT
+                sequential.chooseOrderToAttack(graph);
+                parallel.chooseOrderToAttack(graph);
+                double seqTime = timeSeconds(sequential, graph);
+                double parTime = timeSeconds(parallel, graph);
+                System.out.printf("%8d %12.3f %12.3f %8.2f\n", N, seqTime, parTime, seqTime / parTime);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Measures how many bytes a solve allocates, with and without a reused
+     * SolverWorkspace, over a stream of mid-sized random forests.  (With a
+     * workspace, what's left is mostly the returned List of labels.)
+     * Throws if a solve with a warmed-up workspace allocates more than
+     * {@link #MAX_WORKSPACE_BYTES_PER_FORT}, so a change that brings back
+     * per-solve tables doesn't go unnoticed.
+     */
+    public static void reportSolverAllocation() {
+        RandomForestGenerator maker = new RandomForestGenerator(new Random(42));
+        List<LabeledValueGraph> graphs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            graphs.add(maker.makeRandomAcyclicGraph(8000 + 100 * i, 10, 0.9, 0.2, 0.2, 0.2).freeze());
+        }
+
+        SolverWorkspace workspace = new SolverWorkspace();
+        reportAllocation("GreedyStrategy", new GreedyStrategy(), graphs);
+        double greedy = reportAllocation("GreedyStrategy + workspace", new GreedyStrategy(workspace), graphs);
+        reportAllocation("DPStrategy", new DPStrategy(), graphs);
+        double dp = reportAllocation("DPStrategy + workspace", new DPStrategy(workspace), graphs);
+        System.out.printf("workspace holds %.1f KB%n", workspace.getRetainedBytes() / 1024.0);
+        if (greedy > MAX_WORKSPACE_BYTES_PER_FORT || dp > MAX_WORKSPACE_BYTES_PER_FORT) {
+            throw new IllegalStateException(String.format("Solving with a workspace allocated %.2f (greedy) and %.2f (dp)"
+                    + " bytes per fort, more than the %.1f allowed", greedy, dp, MAX_WORKSPACE_BYTES_PER_FORT));
+        }
+    }
+
+    /**
+     * Compares solving and verifying a big forest through the List of labels
+     * with streaming the order as fort ids (DPStrategy.attackOrderIds), then
+     * streams the order to attack_order.txt.
+     */
+    public static void reportStreamingOrder() throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        LabeledValueGraph graph = new RandomForestGenerator(new Random(42))
+                .makeRandomAcyclicGraph(2097152, 10, 0.99, 0.2, 0.2, 0.2).freeze();
+        DPStrategy strategy = new DPStrategy(new SolverWorkspace());
+        strategy.chooseOrderToAttack(graph); // warm up (and size the workspace)
+
+        long startBytes = threads.getThreadAllocatedBytes(thread);
+        long startTime = System.nanoTime();
+        double gold = AttackValueVerifier.computeGoldForAttackOrdering(graph, strategy.chooseOrderToAttack(graph));
+        System.out.printf("List:   %.1f gold, %.2f s, %.1f MB allocated%n", gold, (System.nanoTime() - startTime) / 1e9,
+                (threads.getThreadAllocatedBytes(thread) - startBytes) / 1e6);
+
+        startBytes = threads.getThreadAllocatedBytes(thread);
+        startTime = System.nanoTime();
+        gold = AttackValueVerifier.computeGoldForAttackOrdering(graph, strategy.attackOrderIds(graph));
+        System.out.printf("Stream: %.1f gold, %.2f s, %.1f MB allocated%n", gold, (System.nanoTime() - startTime) / 1e9,
+                (threads.getThreadAllocatedBytes(thread) - startBytes) / 1e6);
+
+        long written = AttackOrderWriter.write(graph, strategy.attackOrderIds(graph), "attack_order.txt");
+        System.out.println(written + " forts written to attack_order.txt");
+    }
+
+    // prints what a solve allocates once the strategy is warmed up, and returns the bytes per fort
+    private static double reportAllocation(String name, RobbingStrategy strategy, List<LabeledValueGraph> graphs) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (LabeledValueGraph graph : graphs) { // warm up (and size the workspace)
+            strategy.chooseOrderToAttack(graph);
+        }
+        long startBytes = threads.getThreadAllocatedBytes(thread);
+        long startTime = System.nanoTime();
+        long forts = 0;
+        for (LabeledValueGraph graph : graphs) {
+            strategy.chooseOrderToAttack(graph);
+            forts += graph.vertexCount();
+        }
+        long bytes = threads.getThreadAllocatedBytes(thread) - startBytes;
+        System.out.printf("%-27s %7.1f KB per solve, %5.2f bytes per fort, %5.2f ms per solve%n", name,
+                bytes / 1024.0 / graphs.size(), (double) bytes / forts, (System.nanoTime() - startTime) / 1e6 / graphs.size());
+        return (double) bytes / forts;
+    }
+
+    private static double timeSeconds(RobbingStrategy strategy, LabeledValueGraph graph) {
+        long startTime = System.nanoTime();
+        strategy.chooseOrderToAttack(graph);
+        return (System.nanoTime() - startTime) / 1e9;
+    }
+
 }
@@ -0,0 +1,157 @@
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in counters and per-phase timings for the strategies and the graph.
+ * <p>
+ * Everything is off by default.  Call {@link #enable()} before a run, then
+ * read the counters with {@link #get}, the phase timings with
+ * {@link #histogram}, or everything at once with {@link #toJson()}.
+ * <p>
+ * While disabled, every hook is a single check of a plain static boolean.
+ * The counters and histograms are created once, up front, so nothing is
+ * allocated on the hot paths either way.  The strategies count into local
+ * variables and only add their totals at the end of a solve, so enabling
+ * metrics doesn't slow down the inner loops much either.  Timing a phase is
+ * {@code long start = Metrics.startTimer(); ... Metrics.stopTimer(phase, start);}.
+ * <p>
+ * The flag isn't volatile, so turn metrics on or off between runs, not in
+ * the middle of one.
+ */
+public final class Metrics {
+
+    /** The things that are counted. */
+    public enum Counter {
+        /** DPStrategy: partition states created while merging children */
+        DP_STATES_CREATED,
+        /** DPStrategy: (child, partition state) pairs merged */
+        DP_STATES_MERGED,
+        /** GreedyStrategy: forts put on the priority queue */
+        GREEDY_PQ_PUSHES,
+        /** GreedyStrategy: forts taken off the priority queue */
+        GREEDY_PQ_POLLS,
+        /** GreedyStrategy: queue entries moved after their score changed (the queue is indexed, so there are never stale entries to skip) */
+        GREEDY_PQ_UPDATES,
+        /** GreedyStrategy: scores computed */
+        GREEDY_RESCORES,
+        /** BruteForceStrategy: complete orders tried */
+        BRUTE_FORCE_PERMUTATIONS,
+        /** AttackValueVerifier: orders checked */
+        VERIFIER_CALLS,
+        /** LabeledValueGraph: vertices loaded from files */
+        GRAPH_VERTICES_LOADED,
+        /** LabeledValueGraph: edges loaded from files */
+        GRAPH_EDGES_LOADED,
+        /** LabeledValueGraph: neighbor lookups (adj / getAdjacentVertices / adjStart) */
+        GRAPH_ADJACENCY_CALLS
+    }
+
+    /** The phases that are timed. */
+    public enum Phase {
+        LOAD, DECOMPOSE, SOLVE, RECONSTRUCT, VERIFY
+    }
+
+    private static boolean enabled;
+    private static final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private static final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+
+    static {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Zeroes all counters and histograms. */
+    public static void reset() {
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+        for (LatencyHistogram phase : phases) {
+            phase.reset();
+        }
+    }
+
+    public static void add(Counter counter, long amount) {
+        if (enabled) {
+            counters[counter.ordinal()].add(amount);
+        }
+    }
+
+    public static void increment(Counter counter) {
+        if (enabled) {
+            counters[counter.ordinal()].increment();
+        }
+    }
+
+    /** @return a start time for {@link #stopTimer}, or 0 if metrics are off */
+    public static long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Records the time since start (from {@link #startTimer}) for the phase. */
+    public static void stopTimer(Phase phase, long start) {
+        if (enabled) {
+            phases[phase.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /** Records an already measured time for the phase. */
+    public static void record(Phase phase, long nanos) {
+        if (enabled) {
+            phases[phase.ordinal()].record(nanos);
+        }
+    }
+
+    public static long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    public static LatencyHistogram histogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * @return all counters and phase histograms as one JSON object:
+     * {"enabled":..., "counters":{NAME:count,...}, "phases":{NAME:{histogram},...}}
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"enabled\":").append(enabled).append(",\"counters\":{");
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0) sb.append(',');
+            sb.append('"').append(counter.name()).append("\":").append(get(counter));
+        }
+        sb.append("},\"phases\":{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) sb.append(',');
+            sb.append('"').append(phase.name()).append("\":").append(histogram(phase).toJson());
+        }
+        return sb.append("}}").toString();
+    }
+
+    /** Writes {@link #toJson()} to a file. */
+    public static void writeJson(String filename) throws FileNotFoundException {
+        try (PrintWriter out = new PrintWriter(filename)) {
+            out.println(toJson());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Solves each connected component of the graph independently, in parallel,
+ * and concatenates the resulting orders.
+ * <p>
+ * This works with any strategy whose score splits by component (alerts never
+ * cross component boundaries, so DPStrategy, GreedyStrategy and the exact
+ * strategies all qualify).  Small components are grouped into batches of at
+ * least {@code minBatchVertices} vertices so thousands of tiny components
+ * don't turn into thousands of tiny tasks.
+ * <p>
+ * When it's built with a thread count it creates its own pool, and
+ * {@link #close} shuts that pool down; an executor passed in is left alone.
+ */
+public class ParallelComponentStrategy implements RobbingStrategy, AutoCloseable {
+
+    public static final int DEFAULT_MIN_BATCH_VERTICES = 4096;
+
+    private final Supplier<? extends RobbingStrategy> strategyFactory;
+    private final ExecutorService executor;
+    private final int minBatchVertices;
+    private final boolean ownsExecutor;
+
+    /**
+     * @param strategyFactory - creates the strategy used for each batch of components
+     *                        (a fresh instance per task, since some strategies keep state)
+     * @param threads         - number of worker threads (in a pool that {@link #close} shuts down)
+     */
+    public ParallelComponentStrategy(Supplier<? extends RobbingStrategy> strategyFactory, int threads) {
+        this(strategyFactory, new ForkJoinPool(threads), DEFAULT_MIN_BATCH_VERTICES, true);
+    }
+
+    /**
+     * @param strategyFactory  - creates the strategy used for each batch of components
+     * @param executor         - where the batches are solved (the caller shuts it down)
+     * @param minBatchVertices - components are grouped until a batch has at least this many vertices
+     */
+    public ParallelComponentStrategy(Supplier<? extends RobbingStrategy> strategyFactory,
+                                     ExecutorService executor, int minBatchVertices) {
+        this(strategyFactory, executor, minBatchVertices, false);
+    }
+
+    private ParallelComponentStrategy(Supplier<? extends RobbingStrategy> strategyFactory,
+                                      ExecutorService executor, int minBatchVertices, boolean ownsExecutor) {
+        this.strategyFactory = strategyFactory;
+        this.executor = executor;
+        this.minBatchVertices = minBatchVertices;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    @Override
+    public List<String> chooseOrderToAttack(LabeledValueGraph graph) {
+        ComponentDecomposition components = new ComponentDecomposition(graph);
+        int count = components.componentCount();
+        if (count <= 1) {
+            return strategyFactory.get().chooseOrderToAttack(graph);
+        }
+
+        // group consecutive components into batches and hand each batch to the pool
+        List<Future<List<String>>> batches = new ArrayList<>();
+        int batchStart = 0;
+        int batchSize = 0;
+        for (int c = 0; c < count; c++) {
+            batchSize += components.componentSize(c);
+            if (batchSize >= minBatchVertices || c == count - 1) {
+                int from = batchStart;
+                int to = c + 1;
+                batches.add(executor.submit(
+                        () -> strategyFactory.get().chooseOrderToAttack(components.subgraph(from, to))));
+                batchStart = c + 1;
+                batchSize = 0;
+            }
+        }
+
+        List<String> attackOrder = new ArrayList<>(graph.vertexCount());
+        for (Future<List<String>> batch : batches) {
+            attackOrder.addAll(await(batch));
+        }
+        return attackOrder;
+    }
+
+    /**
+     * Shuts down the pool this strategy created, if it created one (tasks
+     * already submitted still finish).
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving components", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
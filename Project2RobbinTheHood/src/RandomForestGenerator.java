@@ -30,6 +30,22 @@ public class RandomForestGenerator {
         return sb.toString();
     }
 
+    private String randomSpecialLabel(int uniqueID, double specialNoHidingProbability,
+                                      double specialParanoidProbability,
+                                      double specialNoMessengersProbability) {
+        String label = uniqueShortAlphabeticText(uniqueID);
+        if (randGen.nextDouble() < specialNoHidingProbability) {
+            label = label + "*";
+        }
+        if (randGen.nextDouble() < specialParanoidProbability) {
+            label = label + "!";
+        }
+        if (randGen.nextDouble() < specialNoMessengersProbability) {
+            label = label + "#";
+        }
+        return label;
+    }
+
     /**
      * @param N                  - number of vertices in the generated graph
      * @param maxGold            - gold for each vertex will be chosen from 1 up to maxGold
@@ -45,16 +61,8 @@ public class RandomForestGenerator {
         LabeledValueGraph graph = new LabeledValueGraph();
         List<String> vertexLabels = new ArrayList<>();
         for (int i = 0; i < N; i++) {
-            String label = uniqueShortAlphabeticText(i);
-            if (randGen.nextDouble() < specialNoHidingProbability) {
-                label = label + "*";
-            }
-            if (randGen.nextDouble() < specialParanoidProbability) {
-                label = label + "!";
-            }
-            if (randGen.nextDouble() < specialNoMessengersProbability) {
-                label = label + "#";
-            }
+            String label = randomSpecialLabel(i, specialNoHidingProbability,
+                    specialParanoidProbability, specialNoMessengersProbability);
             vertexLabels.add(label);
             graph.addVertex(vertexLabels.get(i), randGen.nextInt(1, maxGold + 1));
         }
@@ -68,7 +76,125 @@ public class RandomForestGenerator {
                 graph.addEdge(vertexLabels.get(i), vertexLabels.get(otherVertex));
             }
         }
-        return graph;
+        return graph.freeze();
+    }
+
+    /**
+     * Generates the same kind of forest as {@link #makeRandomAcyclicGraph}, but
+     * writes the vertex and edge lines straight to a file without ever building
+     * the graph, so the memory needed doesn't grow with N (good for forests far
+     * too big for the heap).
+     * <p>
+     * To get there, the two things makeRandomAcyclicGraph keeps per vertex are
+     * computed on demand instead: each vertex's gold and special characters
+     * come from a hash of its id (so an edge line can repeat them without
+     * looking anything up), and the shuffle of the vertex order is replaced by
+     * a keyed pseudo-random permutation of the ids.  The distribution of forests
+     * is the same, but for a given seed the forest is not the one
+     * makeRandomAcyclicGraph would produce.
+     */
+    public void writeRandomAcyclicGraph(String filename, int N, int maxGold, double addEdgeProbability,
+                                        double specialNoHidingProbability,
+                                        double specialParanoidProbability,
+                                        double specialNoMessengersProbability) throws FileNotFoundException {
+        long key = randGen.nextLong();
+        IdPermutation shuffled = new IdPermutation(N, key);
+        try (GraphWriter writer = new GraphWriter(filename)) {
+            writer.comment(LabeledValueGraph.HEADER_COMMENT);
+            for (int i = 0; i < N; i++) {
+                writer.vertex(hashedLabel(key, i, specialNoHidingProbability, specialParanoidProbability,
+                        specialNoMessengersProbability), hashedGold(key, i, maxGold));
+            }
+
+            // add edges (the i-th vertex in the shuffled order to a random earlier one)
+            for (int i = 1; i < N; i++) {
+                if (randGen.nextDouble() < addEdgeProbability) {
+                    int v = shuffled.get(i);
+                    int w = shuffled.get(randGen.nextInt(0, i));
+                    writer.edge(hashedLabel(key, v, specialNoHidingProbability, specialParanoidProbability,
+                                    specialNoMessengersProbability), hashedGold(key, v, maxGold),
+                            hashedLabel(key, w, specialNoHidingProbability, specialParanoidProbability,
+                                    specialNoMessengersProbability), hashedGold(key, w, maxGold));
+                }
+            }
+            writer.newLine();
+        }
+    }
+
+    private static String hashedLabel(long key, int uniqueID, double specialNoHidingProbability,
+                                      double specialParanoidProbability,
+                                      double specialNoMessengersProbability) {
+        String label = uniqueShortAlphabeticText(uniqueID);
+        if (hashedDouble(key, 4L * uniqueID + 1) < specialNoHidingProbability) {
+            label = label + "*";
+        }
+        if (hashedDouble(key, 4L * uniqueID + 2) < specialParanoidProbability) {
+            label = label + "!";
+        }
+        if (hashedDouble(key, 4L * uniqueID + 3) < specialNoMessengersProbability) {
+            label = label + "#";
+        }
+        return label;
+    }
+
+    private static int hashedGold(long key, int uniqueID, int maxGold) {
+        return 1 + (int) ((hash(key, 4L * uniqueID) >>> 1) % maxGold);
+    }
+
+    // uniform in [0, 1)
+    private static double hashedDouble(long key, long x) {
+        return (hash(key, x) >>> 11) * 0x1.0p-53;
+    }
+
+    // SplitMix64 finalizer of (key, x)
+    private static long hash(long key, long x) {
+        long z = key + x * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * A pseudo-random permutation of 0..N-1 that takes no memory: a small
+     * Feistel network over the smallest power-of-4 range that holds N, and
+     * values that land outside 0..N-1 are just encrypted again ("cycle
+     * walking") until they're back in range.
+     */
+    private static final class IdPermutation {
+        private static final int ROUNDS = 4;
+        private final int n;
+        private final int halfBits;
+        private final long key;
+
+        IdPermutation(int n, long key) {
+            this.n = n;
+            this.key = key;
+            int bits = 2;
+            while ((1L << bits) < n) {
+                bits += 2;
+            }
+            halfBits = bits / 2;
+        }
+
+        int get(int i) {
+            long x = i;
+            do {
+                x = encrypt(x);
+            } while (x >= n);
+            return (int) x;
+        }
+
+        private long encrypt(long x) {
+            long mask = (1L << halfBits) - 1;
+            long left = x >>> halfBits;
+            long right = x & mask;
+            for (int round = 0; round < ROUNDS; round++) {
+                long next = left ^ (hash(key + round, right) & mask);
+                left = right;
+                right = next;
+            }
+            return left << halfBits | right;
+        }
     }
 
     /**
@@ -89,7 +215,59 @@ public class RandomForestGenerator {
         for (int i = 1; i < N; i++) {
             graph.addEdge(vertexLabels.get(i-1), vertexLabels.get(i));
         }
-        return graph;
+        return graph.freeze();
+    }
+
+    /**
+     * Same as {@link #makeRandomChainGraph(int, int)}, but with special forts.
+     *
+     * @param N       - number of vertices in the chain
+     * @param maxGold - gold for each vertex will be chosen from 1 up to maxGold
+     * @return a simple linear (chain) graph with N vertices
+     */
+    public LabeledValueGraph makeRandomChainGraph(int N, int maxGold,
+                                                  double specialNoHidingProbability,
+                                                  double specialParanoidProbability,
+                                                  double specialNoMessengersProbability) {
+        LabeledValueGraph graph = new LabeledValueGraph();
+        List<String> vertexLabels = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            String label = randomSpecialLabel(i, specialNoHidingProbability,
+                    specialParanoidProbability, specialNoMessengersProbability);
+            vertexLabels.add(label);
+            graph.addVertex(vertexLabels.get(i), randGen.nextInt(1, maxGold + 1));
+        }
+
+        // add edges in chain
+        for (int i = 1; i < N; i++) {
+            graph.addEdge(vertexLabels.get(i-1), vertexLabels.get(i));
+        }
+        return graph.freeze();
+    }
+
+    /**
+     * @param N       - number of vertices in the star (one hub plus N-1 leaves)
+     * @param maxGold - gold for each vertex will be chosen from 1 up to maxGold
+     * @return a star graph, where vertex 0 is connected to every other vertex
+     */
+    public LabeledValueGraph makeRandomStarGraph(int N, int maxGold,
+                                                 double specialNoHidingProbability,
+                                                 double specialParanoidProbability,
+                                                 double specialNoMessengersProbability) {
+        LabeledValueGraph graph = new LabeledValueGraph();
+        List<String> vertexLabels = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            String label = randomSpecialLabel(i, specialNoHidingProbability,
+                    specialParanoidProbability, specialNoMessengersProbability);
+            vertexLabels.add(label);
+            graph.addVertex(vertexLabels.get(i), randGen.nextInt(1, maxGold + 1));
+        }
+
+        // connect every leaf to the hub
+        for (int i = 1; i < N; i++) {
+            graph.addEdge(vertexLabels.get(0), vertexLabels.get(i));
+        }
+        return graph.freeze();
     }
 
     public static void main(String[] args) throws FileNotFoundException {
@@ -103,6 +281,10 @@ public class RandomForestGenerator {
 				0.00, 0.0, 0.0);
         graph.saveToFile("samples/tree8.graph");
 
+//        // forests too big for the heap can be written straight to disk:
+//        maker.writeRandomAcyclicGraph("samples/huge.graph", 100_000_000, 100, 0.95,
+//                0.05, 0.05, 0.05);
+
 
 
 //        RandomForestGenerator maker = new RandomForestGenerator(new Random());
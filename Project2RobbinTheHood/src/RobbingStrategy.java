@@ -1,6 +1,23 @@
 import java.util.List;
+import java.util.PrimitiveIterator;
 
 public interface RobbingStrategy {
 
     public List<String> chooseOrderToAttack(LabeledValueGraph graph);
+
+    /**
+     * The same attack order as {@link #chooseOrderToAttack}, handed out one
+     * fort at a time as ids in the (frozen) graph, so a caller that just
+     * streams the order somewhere never has to hold it as a List of labels
+     * (see {@link AttackValueVerifier#computeGoldForAttackOrdering(LabeledValueGraph, PrimitiveIterator.OfInt)}
+     * and {@link AttackOrderWriter}).
+     * <p>
+     * This default still builds the List and walks it; strategies that can
+     * produce the order lazily (DPStrategy) override it.
+     */
+    public default PrimitiveIterator.OfInt attackOrderIds(LabeledValueGraph graph) {
+        List<String> attackOrder = chooseOrderToAttack(graph);
+        graph.freeze();
+        return attackOrder.stream().mapToInt(graph::indexOf).iterator();
+    }
 }
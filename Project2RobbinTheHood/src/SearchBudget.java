@@ -0,0 +1,55 @@
+/**
+ * How long an {@link AnytimeStrategy} may keep searching: an optional
+ * deadline, plus a cancel switch that another thread can flip at any time.
+ * Strategies poll {@link #isExpired()} every so often and, once it's true,
+ * stop and return the best order they have.
+ */
+public final class SearchBudget {
+
+    private final long startNanos;
+    private final long deadlineNanos;   // in System.nanoTime() terms
+    private final boolean bounded;
+    private volatile boolean cancelled;
+
+    private SearchBudget(long timeoutNanos) {
+        startNanos = System.nanoTime();
+        bounded = timeoutNanos >= 0;
+        deadlineNanos = startNanos + (bounded ? timeoutNanos : 0);
+    }
+
+    /** @return a budget with no deadline (it only ends if it's cancelled) */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(-1);
+    }
+
+    /** @return a budget that expires the given number of milliseconds from now */
+    public static SearchBudget ofMillis(long millis) {
+        return new SearchBudget(Math.max(0, millis) * 1_000_000L);
+    }
+
+    /** Stops the search as soon as the strategy next checks. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** @return true if the search has been cancelled or has run out of time */
+    public boolean isExpired() {
+        return cancelled || (bounded && System.nanoTime() - deadlineNanos >= 0);
+    }
+
+    /** @return nanoseconds left before the deadline (Long.MAX_VALUE if there is none, 0 once expired) */
+    public long remainingNanos() {
+        if (cancelled) {
+            return 0;
+        }
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    /** @return nanoseconds since the budget was created */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Solved attack orders of tree components, keyed by their canonical form
+ * (see {@link TreeCanonicalForm}), for CachingStrategy.
+ * <p>
+ * Keys are the whole canonical code, not just its hash, so a lookup can never
+ * return the order of a different tree.  Orders are stored as canonical fort
+ * numbers, so they don't depend on labels.  The cache is least-recently-used
+ * and bounded by the total number of forts in its entries; big entries count
+ * for more.  All methods are thread-safe.
+ * <p>
+ * The cache only remembers what it was given, so it should only ever be
+ * filled by one strategy (mixing entries from different strategies would
+ * mix their answers).
+ */
+public class SolutionCache {
+
+    public static final long DEFAULT_MAX_VERTICES = 1 << 20;
+
+    private static final int MAGIC = 0x52485343; // "RHSC"
+    private static final int VERSION = 1;
+
+    private final long maxVertices;
+    private final LinkedHashMap<Key, int[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long vertices;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxVertices - most forts (summed over all entries) to keep
+     */
+    public SolutionCache(long maxVertices) {
+        if (maxVertices < 1) {
+            throw new IllegalArgumentException("maxVertices must be positive: " + maxVertices);
+        }
+        this.maxVertices = maxVertices;
+    }
+
+    /** The canonical code, with its hash computed once. */
+    private static final class Key {
+        final int[] code;
+        final int hash;
+
+        Key(int[] code) {
+            this.code = code;
+            this.hash = Arrays.hashCode(code);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(code, ((Key) o).code);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * @return the cached order (canonical fort numbers) for the tree with this code,
+     * or null; counts as a hit or a miss
+     */
+    synchronized int[] get(int[] code) {
+        int[] order = entries.get(new Key(code));
+        if (order == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return order;
+    }
+
+    /**
+     * Remembers the order for the tree with this code, evicting the least
+     * recently used entries if that goes over the size limit.
+     */
+    synchronized void put(int[] code, int[] order) {
+        if (order.length > maxVertices) {
+            return; // would evict everything and still not fit
+        }
+        int[] old = entries.put(new Key(code), order);
+        if (old != null) {
+            vertices -= old.length;
+        }
+        vertices += order.length;
+        Iterator<int[]> eldest = entries.values().iterator();
+        while (vertices > maxVertices) {
+            vertices -= eldest.next().length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** @return the fraction of lookups that were hits (0 if there were none) */
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /** @return the number of cached trees */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** @return the total number of forts in the cached trees */
+    public synchronized long getVertexCount() {
+        return vertices;
+    }
+
+    /**
+     * Writes all entries to a file (least recently used first, so loading
+     * it back keeps the same LRU order).
+     */
+    public synchronized void save(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<Key, int[]> entry : entries.entrySet()) {
+                writeInts(out, entry.getKey().code);
+                writeInts(out, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Loads a cache written by {@link #save}, or returns an empty cache if the
+     * file doesn't exist yet (e.g. on the first run).  If the file holds more
+     * than maxVertices forts, the least recently used entries are dropped.
+     */
+    public static SolutionCache load(String filename, long maxVertices) throws IOException {
+        SolutionCache cache = new SolutionCache(maxVertices);
+        if (!new File(filename).exists()) {
+            return cache;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a solution cache (or an unsupported version): " + filename);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int[] code = readInts(in);
+                int[] order = readInts(in);
+                if (code.length != 2 * order.length) {
+                    throw new IOException("Solution cache is corrupt: " + filename);
+                }
+                cache.put(code, order);
+            }
+        }
+        cache.evictions = 0;
+        return cache;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int x : values) {
+            out.writeInt(x);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Solution cache is corrupt (negative length)");
+        }
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
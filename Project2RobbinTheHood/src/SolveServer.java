@@ -0,0 +1,367 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-running solve service, so scripts don't pay for JVM startup and JIT
+ * warmup on every map.
+ * <p>
+ * It listens on the loopback address only and has two endpoints:
+ * <ul>
+ *   <li>{@code POST /solve?strategy=auto|greedy|dp|exact} with a graph in the
+ *       usual .graph text format as the body.  The answer is JSON:
+ *       {@code {"strategy":..., "vertices":..., "gold":..., "parse_ms":...,
+ *       "solve_ms":..., "order":[...]}}, or {@code {"error":...}} with status
+ *       400 (bad graph or strategy), 405 (not a POST), 413 (too many vertices,
+ *       or too big for exact) or 503 (busy).</li>
+ *   <li>{@code GET /status}: the limits and request counts, as JSON.</li>
+ * </ul>
+ * The strategies: greedy is GreedyStrategy, dp is DPStrategy (exact on
+ * forests), exact is TreeDecompositionStrategy with BranchAndBoundStrategy
+ * for graphs too wide to decompose, which is only allowed up to
+ * {@code maxExactVertices} forts, and auto (the default) is the same as exact
+ * except that it falls back to greedy instead of refusing.  The tree
+ * decomposition is also capped at {@code maxExactWork} DP table entries
+ * (about 20 ns each), checked before its DP starts: a long strip of a grid
+ * is narrow enough to decompose but can still take minutes, and that would
+ * hold an in-flight slot the whole time.  Over the cap it's handled like a
+ * graph that is too wide.
+ * <p>
+ * Admission control: at most {@code maxInFlight} requests are read and solved
+ * at the same time, and any more are turned away with 503 right away rather
+ * than queued, without reading their bodies (curl shows the 503 right away; a
+ * client that insists on finishing its upload sees the connection close
+ * instead).  A graph with more than
+ * {@code maxVertices} vertices is refused (413) as soon as the parser sees
+ * one too many.
+ * <p>
+ * Each request runs on its own virtual thread when the JVM has them (Java 21
+ * and up; the code is built for 17, so they're looked up by reflection), and
+ * on a plain cached thread pool otherwise.  The strategy instances are kept
+ * in a pool with one set per in-flight slot, so a request never creates them.
+ * Greedy and dp in a slot share a {@link SolverWorkspace}, so once the slot
+ * has seen a graph that big they solve without allocating their tables.
+ * {@link #start} runs every strategy on a few random graphs first, so the
+ * JIT has compiled the hot paths before the first real request arrives.
+ * <p>
+ * Run it as {@code SolveServer [port [maxInFlight [maxVertices [maxExactVertices [maxExactWork]]]]]},
+ * then e.g. {@code curl --data-binary @samples/tree8.graph localhost:8123/solve?strategy=dp}.
+ */
+public class SolveServer {
+
+    public static final int DEFAULT_PORT = 8123;
+    public static final int DEFAULT_MAX_VERTICES = 2_000_000;
+    public static final int DEFAULT_MAX_EXACT_VERTICES = 20;
+    public static final long DEFAULT_MAX_EXACT_WORK = 100_000_000L; // a couple of seconds
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int WARMUP_VERTICES = 20000;
+
+    private final int maxInFlight;
+    private final int maxVertices;
+    private final int maxExactVertices;
+    private final long maxExactWork;
+
+    private final Semaphore inFlight;
+    private final BlockingQueue<Solvers> pool;
+    private final AtomicLong solved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param maxInFlight      - most requests handled at the same time (the rest get 503)
+     * @param maxVertices      - most vertices in one graph (bigger ones get 413)
+     * @param maxExactVertices - most forts the exact strategy will search exhaustively
+     * @param maxExactWork     - most DP table entries a tree decomposition solve may compute
+     */
+    public SolveServer(int maxInFlight, int maxVertices, int maxExactVertices, long maxExactWork) {
+        if (maxInFlight < 1 || maxVertices < 1 || maxExactVertices < 0 || maxExactWork < 1) {
+            throw new IllegalArgumentException("maxInFlight, maxVertices and maxExactWork must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxVertices = maxVertices;
+        this.maxExactVertices = maxExactVertices;
+        this.maxExactWork = maxExactWork;
+        inFlight = new Semaphore(maxInFlight);
+        pool = new ArrayBlockingQueue<>(maxInFlight);
+        for (int i = 0; i < maxInFlight; i++) {
+            pool.add(new Solvers(maxExactVertices, maxExactWork));
+        }
+    }
+
+    /** @return the number of graphs solved so far */
+    public long getSolvedCount() {
+        return solved.get();
+    }
+
+    /** @return the number of requests that failed (bad input, too big, ...) so far */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /** @return the number of requests turned away unread (server busy, or not a POST) */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Warms up the strategies and starts listening on the loopback address.
+     *
+     * @param port - the port to listen on, or 0 for any free one
+     * @return the port it's listening on
+     */
+    public synchronized int start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server is already running");
+        }
+        warmUp();
+        executor = newPerRequestExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/status", this::handleStatus);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /** Stops listening, waiting up to a second for requests that are still running. */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        executor.shutdown();
+        server = null;
+        executor = null;
+    }
+
+    // a virtual thread per task if this JVM has them, a cached pool of platform threads if not
+    private static ExecutorService newPerRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "solve-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // runs the whole request path (parse, solve, score) on random graphs through every pooled strategy set
+    private void warmUp() {
+        RandomForestGenerator maker = new RandomForestGenerator(new Random(1));
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            byte[] forest = maker.makeRandomAcyclicGraph(WARMUP_VERTICES, 10, 0.9, 0.2, 0.2, 0.2)
+                    .toString().getBytes(StandardCharsets.UTF_8);
+            byte[] small = maker.makeRandomAcyclicGraph(Math.max(1, Math.min(12, maxExactVertices)), 10, 0.9, 0.2, 0.2, 0.2)
+                    .toString().getBytes(StandardCharsets.UTF_8);
+            for (Solvers solvers : pool) {
+                for (String strategy : new String[]{"greedy", "dp", "exact", "auto"}) {
+                    try {
+                        solvers.solve(new ByteArrayInputStream(forest), strategy, maxVertices);
+                        solvers.solve(new ByteArrayInputStream(small), strategy, maxVertices);
+                    } catch (IOException | RuntimeException e) {
+                        // warming up is best effort; a real request will report the same problem properly
+                    }
+                }
+            }
+        }
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                rejected.incrementAndGet();
+                send(exchange, 405, error("use POST with the graph as the body"));
+                return;
+            }
+            String strategy = queryParameter(exchange, "strategy", "auto").toLowerCase(Locale.ROOT);
+            if (!Solvers.isKnown(strategy)) {
+                failed.incrementAndGet();
+                send(exchange, 400, error("Unknown strategy: " + strategy));
+                return;
+            }
+            if (!inFlight.tryAcquire()) {
+                rejected.incrementAndGet();
+                // the body is left unread, so the connection can't be reused for another request
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.getResponseHeaders().set("Connection", "close");
+                respond(exchange, 503, error("busy, " + maxInFlight + " requests already in flight"));
+                return;
+            }
+            Solvers solvers = pool.poll(); // never null: there's one per permit
+            try {
+                String answer = solvers.solve(exchange.getRequestBody(), strategy, maxVertices);
+                solved.incrementAndGet();
+                send(exchange, 200, answer);
+            } catch (GraphFileParser.TooManyVerticesException | TooLargeForExactException e) {
+                failed.incrementAndGet();
+                send(exchange, 413, error(e.getMessage()));
+            } catch (IllegalArgumentException e) {
+                failed.incrementAndGet();
+                send(exchange, 400, error(e.toString()));
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                send(exchange, 500, error(e.toString()));
+            } finally {
+                pool.add(solvers);
+                inFlight.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try {
+            send(exchange, 200, String.format(Locale.ROOT,
+                    "{\"in_flight\":%d,\"max_in_flight\":%d,\"max_vertices\":%d,\"max_exact_vertices\":%d,"
+                            + "\"max_exact_work\":%d,\"solved\":%d,\"failed\":%d,\"rejected\":%d}",
+                    maxInFlight - inFlight.availablePermits(), maxInFlight, maxVertices, maxExactVertices,
+                    maxExactWork, solved.get(), failed.get(), rejected.get()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name, String defaultValue) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith(name + "=")) {
+                    return pair.substring(name.length() + 1);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + BatchSolver.jsonString(message) + "}";
+    }
+
+    // the client gets the answer only after it has sent the whole request (otherwise
+    // an early error would just show up as a reset connection), so read the rest first
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+        respond(exchange, status, json);
+    }
+
+    // answers without reading (the rest of) the request body
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /** Thrown when an exact solve would have to search a graph over the size cap. */
+    static final class TooLargeForExactException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeForExactException(int vertices, int maxExactVertices) {
+            super("Graph is too big for the tree decomposition and has " + vertices
+                    + " vertices, more than the " + maxExactVertices + " allowed for an exhaustive search");
+        }
+    }
+
+    /**
+     * One set of strategy instances, used by one request at a time.
+     */
+    private static final class Solvers {
+        private final SolverWorkspace workspace = new SolverWorkspace();
+        private final GreedyStrategy greedy = new GreedyStrategy(workspace);
+        private final DPStrategy dp = new DPStrategy(workspace);
+        private final TreeDecompositionStrategy exact;
+        private final TreeDecompositionStrategy auto;
+
+        Solvers(int maxExactVertices, long maxExactWork) {
+            BranchAndBoundStrategy branchAndBound = new BranchAndBoundStrategy();
+            int maxWidth = TreeDecompositionStrategy.DEFAULT_MAX_WIDTH;
+            exact = new TreeDecompositionStrategy(maxWidth, maxExactWork, graph -> {
+                if (graph.vertexCount() > maxExactVertices) {
+                    throw new TooLargeForExactException(graph.vertexCount(), maxExactVertices);
+                }
+                return branchAndBound.chooseOrderToAttack(graph);
+            });
+            auto = new TreeDecompositionStrategy(maxWidth, maxExactWork, graph ->
+                    graph.vertexCount() > maxExactVertices ? greedy.chooseOrderToAttack(graph)
+                            : branchAndBound.chooseOrderToAttack(graph));
+        }
+
+        static boolean isKnown(String strategy) {
+            switch (strategy) {
+                case "greedy": case "dp": case "exact": case "auto": return true;
+                default: return false;
+            }
+        }
+
+        private RobbingStrategy named(String strategy) {
+            switch (strategy) {
+                case "greedy": return greedy;
+                case "dp": return dp;
+                case "exact": return exact;
+                default: return auto;
+            }
+        }
+
+        /** Parses, solves and scores one graph, returning the JSON answer. */
+        String solve(InputStream body, String strategyName, int maxVertices) throws IOException {
+            long start = System.nanoTime();
+            LabeledValueGraph graph = GraphFileParser.parse(body, maxVertices);
+            double parseMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            RobbingStrategy strategy = named(strategyName);
+            List<String> attackOrder = strategy.chooseOrderToAttack(graph);
+            double solveMillis = (System.nanoTime() - start) / 1e6;
+            double gold = new AttackEvaluator(graph).evaluate(attackOrder);
+
+            StringBuilder sb = new StringBuilder(32 + 16 * attackOrder.size());
+            sb.append("{\"strategy\":").append(BatchSolver.jsonString(strategy.getClass().getSimpleName()));
+            sb.append(String.format(Locale.ROOT, ",\"vertices\":%d,\"gold\":%s,\"parse_ms\":%.3f,\"solve_ms\":%.3f,\"order\":[",
+                    graph.vertexCount(), gold, parseMillis, solveMillis));
+            for (int i = 0; i < attackOrder.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(BatchSolver.jsonString(attackOrder.get(i)));
+            }
+            return sb.append("]}").toString();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxInFlight = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxVertices = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_VERTICES;
+        int maxExact = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_EXACT_VERTICES;
+        long maxExactWork = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_MAX_EXACT_WORK;
+
+        SolveServer solveServer = new SolveServer(maxInFlight, maxVertices, maxExact, maxExactWork);
+        long start = System.nanoTime();
+        int boundPort = solveServer.start(port);
+        System.out.printf("warmed up in %.2f s, listening on http://localhost:%d/solve%n",
+                (System.nanoTime() - start) / 1e9, boundPort);
+    }
+}
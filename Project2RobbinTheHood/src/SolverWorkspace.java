@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * Scratch memory that a strategy can reuse from one solve to the next, so a
+ * loop over many graphs doesn't allocate (and garbage collect) a fresh set of
+ * per-vertex arrays every time.
+ * <p>
+ * A strategy asks for its arrays by slot number (each strategy has its own
+ * slot constants) and the length it needs.  An array is only reallocated when
+ * the slot's current one is too short, and it's then grown with some
+ * headroom, so after the biggest graph has been seen nothing is allocated
+ * anymore.  The arrays can be longer than asked for and are NOT cleared:
+ * whatever the last solve left in them is still there, so the caller has to
+ * initialize every entry it reads.  {@link #marks} is the exception: its
+ * marks are cleared by bumping an epoch number, which is O(1) no matter how
+ * big the array is.
+ * <p>
+ * A workspace is not thread-safe; give each thread (or each in-flight
+ * request) its own.  The strategies that take one (GreedyStrategy,
+ * DPStrategy) can share a workspace, as long as they don't run at the same
+ * time.
+ */
+public final class SolverWorkspace {
+
+    private int[][] ints = new int[0][];
+    private long[][] longs = new long[0][];
+    private double[][] doubles = new double[0][];
+    private byte[][] bytes = new byte[0][];
+    private Marks[] marks = new Marks[0];
+
+    /** @return an int array of at least the given length (contents left over from earlier use) */
+    public int[] ints(int slot, int length) {
+        if (slot >= ints.length) ints = Arrays.copyOf(ints, slot + 1);
+        if (ints[slot] == null || ints[slot].length < length) ints[slot] = new int[grow(ints[slot] == null, length)];
+        return ints[slot];
+    }
+
+    /** @return a long array of at least the given length (contents left over from earlier use) */
+    public long[] longs(int slot, int length) {
+        if (slot >= longs.length) longs = Arrays.copyOf(longs, slot + 1);
+        if (longs[slot] == null || longs[slot].length < length) longs[slot] = new long[grow(longs[slot] == null, length)];
+        return longs[slot];
+    }
+
+    /** @return a double array of at least the given length (contents left over from earlier use) */
+    public double[] doubles(int slot, int length) {
+        if (slot >= doubles.length) doubles = Arrays.copyOf(doubles, slot + 1);
+        if (doubles[slot] == null || doubles[slot].length < length) doubles[slot] = new double[grow(doubles[slot] == null, length)];
+        return doubles[slot];
+    }
+
+    /** @return a byte array of at least the given length (contents left over from earlier use) */
+    public byte[] bytes(int slot, int length) {
+        if (slot >= bytes.length) bytes = Arrays.copyOf(bytes, slot + 1);
+        if (bytes[slot] == null || bytes[slot].length < length) bytes[slot] = new byte[grow(bytes[slot] == null, length)];
+        return bytes[slot];
+    }
+
+    /** @return a set of marks for ids 0 .. length-1, with nothing marked */
+    public Marks marks(int slot, int length) {
+        if (slot >= marks.length) marks = Arrays.copyOf(marks, slot + 1);
+        if (marks[slot] == null) marks[slot] = new Marks();
+        marks[slot].clear(length);
+        return marks[slot];
+    }
+
+    /** @return the total size of all the arrays held, in bytes (roughly what the workspace keeps alive) */
+    public long getRetainedBytes() {
+        long total = 0;
+        for (int[] a : ints) total += a == null ? 0 : 4L * a.length;
+        for (long[] a : longs) total += a == null ? 0 : 8L * a.length;
+        for (double[] a : doubles) total += a == null ? 0 : 8L * a.length;
+        for (byte[] a : bytes) total += a == null ? 0 : a.length;
+        for (Marks m : marks) total += m == null ? 0 : 4L * m.stamp.length;
+        return total;
+    }
+
+    // the exact length the first time; after that an eighth extra, so a run of
+    // slowly growing graphs doesn't reallocate every time
+    private static int grow(boolean first, int length) {
+        return first ? length : (int) Math.min(Integer.MAX_VALUE - 8, length + (length >> 3) + 16L);
+    }
+
+    /**
+     * A set of ids, kept as a stamp per id: an id is marked when its stamp
+     * equals the current epoch, so clearing all the marks is just starting
+     * a new epoch.
+     */
+    public static final class Marks {
+        private int[] stamp = new int[0];
+        private int epoch;
+
+        void clear(int length) {
+            if (stamp.length < length) {
+                stamp = new int[grow(stamp.length == 0, length)];
+                epoch = 0;
+            }
+            epoch++;
+            if (epoch == 0) { // wrapped around after 2^32 clears, so the old stamps could look current
+                Arrays.fill(stamp, 0);
+                epoch = 1;
+            }
+        }
+
+        public boolean get(int id) {
+            return stamp[id] == epoch;
+        }
+
+        public void set(int id) {
+            stamp[id] = epoch;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An exact strategy for general graphs (cycles allowed), using dynamic
+ * programming over subsets of already-attacked forts.
+ * <p>
+ * Which forts are on alert depends only on WHICH forts have been attacked so
+ * far (not on their order), so the best gold still available from a given
+ * set of attacked forts can be memoized.  That's 2^N states with N choices
+ * each, instead of N! orders.  Each connected component is solved on its own,
+ * so only the biggest component has to stay under {@link #MAX_COMPONENT_SIZE}.
+ * <p>
+ * Gold is tracked in half-gold units (ints), so the DP is exact.
+ */
+public class SubsetDPStrategy implements RobbingStrategy {
+
+    /** 2^28 ints is already a 1GB table, so bigger components are refused. */
+    public static final int MAX_COMPONENT_SIZE = 28;
+
+    @Override
+    public List<String> chooseOrderToAttack(LabeledValueGraph graph) {
+        ComponentDecomposition components = new ComponentDecomposition(graph);
+        List<String> attackOrder = new ArrayList<>(graph.vertexCount());
+        for (int c = 0; c < components.componentCount(); c++) {
+            solveComponent(components, c, attackOrder);
+        }
+        return attackOrder;
+    }
+
+    private void solveComponent(ComponentDecomposition components, int c, List<String> attackOrder) {
+        LabeledValueGraph graph = components.getGraph();
+        int k = components.componentSize(c);
+        if (k > MAX_COMPONENT_SIZE) {
+            throw new IllegalArgumentException("Component with " + k + " forts is too big for the subset DP (max "
+                    + MAX_COMPONENT_SIZE + ").");
+        }
+
+        // local index i <-> vertex components.member(c, i)
+        int[] fullGold = new int[k];   // in half-gold units
+        int[] alertedGold = new int[k];
+        int[] alertsOnAttack = new int[k]; // bitmask of forts alerted when fort i is attacked
+        long totalGold = 0;
+        for (int i = 0; i < k; i++) {
+            int v = components.member(c, i);
+            byte flags = graph.flagsOf(v);
+            fullGold[i] = 2 * graph.valueOf(v);
+            alertedGold[i] = (flags & LabeledValueGraph.IMMUNE) != 0 ? fullGold[i] : graph.valueOf(v);
+            if ((flags & LabeledValueGraph.SELF_ALERT) != 0) {
+                fullGold[i] = alertedGold[i];
+            }
+            totalGold += 2L * Math.abs((long) graph.valueOf(v));
+            if ((flags & LabeledValueGraph.SHIELD) == 0) {
+                for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                    int w = graph.adjTarget(e);
+                    int j = components.indexInComponent(w);
+                    alertsOnAttack[i] |= 1 << j;
+                }
+            }
+        }
+        if (totalGold > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Fort values are too large for the subset DP.");
+        }
+
+        // best[S] = most gold we can still get once exactly the forts in S have been attacked
+        int allForts = (1 << k) - 1;
+        int[] best = new int[1 << k];
+        for (int attacked = allForts - 1; attacked >= 0; attacked--) {
+            int alerted = alertedBy(attacked, alertsOnAttack);
+            int bestHere = Integer.MIN_VALUE;
+            for (int free = ~attacked & allForts; free != 0; free &= free - 1) {
+                int i = Integer.numberOfTrailingZeros(free);
+                int gold = ((alerted >> i) & 1) != 0 ? alertedGold[i] : fullGold[i];
+                int total = gold + best[attacked | (1 << i)];
+                if (total > bestHere) {
+                    bestHere = total;
+                }
+            }
+            best[attacked] = bestHere;
+        }
+
+        // walk forward from the empty set, each time taking a fort that achieves the optimum
+        int attacked = 0;
+        for (int step = 0; step < k; step++) {
+            int alerted = alertedBy(attacked, alertsOnAttack);
+            for (int free = ~attacked & allForts; free != 0; free &= free - 1) {
+                int i = Integer.numberOfTrailingZeros(free);
+                int gold = ((alerted >> i) & 1) != 0 ? alertedGold[i] : fullGold[i];
+                if (gold + best[attacked | (1 << i)] == best[attacked]) {
+                    attackOrder.add(graph.labelOf(components.member(c, i)));
+                    attacked |= 1 << i;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int alertedBy(int attacked, int[] alertsOnAttack) {
+        int alerted = 0;
+        for (int rest = attacked; rest != 0; rest &= rest - 1) {
+            alerted |= alertsOnAttack[Integer.numberOfTrailingZeros(rest)];
+        }
+        return alerted;
+    }
+}
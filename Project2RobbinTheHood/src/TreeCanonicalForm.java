@@ -0,0 +1,211 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * AHU-style canonical form of one tree component: two trees get the same
+ * {@link #code} exactly when they are the same shape with the same values
+ * and flags (whatever their labels are).
+ * <p>
+ * The tree is rooted at its center (trying both centers when there are two,
+ * and keeping the smaller code).  Subtrees are ranked bottom-up one height
+ * at a time.  Within a height they are sorted by (value, flags, number of
+ * children, ranks of the children in sorted order), and equal subtrees get
+ * equal ranks.  Lower heights always rank lower, so the ranks follow an order
+ * on subtree shapes that doesn't depend on the rest of the tree.  The code
+ * is then a preorder walk that visits children in rank order, giving
+ * (value, childCount << 8 | flags) per fort.
+ * <p>
+ * The same walk gives a canonical numbering of the forts.  If two components
+ * have equal codes, fort i of one matches fort i of the other (an
+ * isomorphism), which is what lets a cached order be moved onto new labels.
+ */
+final class TreeCanonicalForm {
+
+    /** Two ints per fort, in canonical order: value, childCount << 8 | flags. */
+    final int[] code;
+
+    /** vertexAt[i] = the vertex id (in the original graph) of canonical fort i */
+    final int[] vertexAt;
+
+    private TreeCanonicalForm(int[] code, int[] vertexAt) {
+        this.code = code;
+        this.vertexAt = vertexAt;
+    }
+
+    /**
+     * @return the canonical form of component c, which must be a tree
+     * (componentSize(c) - 1 edges)
+     */
+    static TreeCanonicalForm of(ComponentDecomposition components, int c) {
+        Builder b = new Builder(components, c);
+        int[] path = b.diameterPath();
+        int centers = path.length % 2 == 1 ? 1 : 2;
+        TreeCanonicalForm best = b.encode(path[(path.length - 1) / 2]);
+        if (centers == 2) {
+            TreeCanonicalForm other = b.encode(path[path.length / 2]);
+            if (Arrays.compare(other.code, best.code) < 0) {
+                best = other;
+            }
+        }
+        return best;
+    }
+
+    /** @return true if component c has no cycles */
+    static boolean isTree(ComponentDecomposition components, int c) {
+        LabeledValueGraph graph = components.getGraph();
+        long degreeSum = 0;
+        for (int i = 0; i < components.componentSize(c); i++) {
+            degreeSum += graph.degree(components.member(c, i));
+        }
+        return degreeSum == 2L * (components.componentSize(c) - 1);
+    }
+
+    /** Scratch arrays for one component, indexed by position within the component. */
+    private static final class Builder {
+        private final LabeledValueGraph graph;
+        private final ComponentDecomposition components;
+        private final int c;
+        private final int s;
+        private final int[] queue;
+        private final int[] parent;
+
+        Builder(ComponentDecomposition components, int c) {
+            this.graph = components.getGraph();
+            this.components = components;
+            this.c = c;
+            s = components.componentSize(c);
+            queue = new int[s];
+            parent = new int[s];
+        }
+
+        private int vertex(int local) {
+            return components.member(c, local);
+        }
+
+        // BFS from root, filling queue (in BFS order) and parent; returns the last vertex reached
+        private int bfs(int root) {
+            Arrays.fill(parent, -2);
+            parent[root] = -1;
+            queue[0] = root;
+            int tail = 1;
+            for (int head = 0; head < tail; head++) {
+                int v = vertex(queue[head]);
+                for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                    int w = components.indexInComponent(graph.adjTarget(e));
+                    if (parent[w] == -2) {
+                        parent[w] = queue[head];
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            return queue[s - 1];
+        }
+
+        int[] diameterPath() {
+            int a = bfs(0);
+            int b = bfs(a);
+            int length = 0;
+            for (int v = b; v != -1; v = parent[v]) length++;
+            int[] path = new int[length];
+            for (int v = b, i = 0; v != -1; v = parent[v]) path[i++] = v;
+            return path;
+        }
+
+        TreeCanonicalForm encode(int root) {
+            bfs(root);
+
+            // children lists, and heights bottom-up (reverse BFS order)
+            int[] childStart = new int[s + 1];
+            for (int i = 1; i < s; i++) {
+                childStart[parent[queue[i]] + 1]++;
+            }
+            for (int v = 0; v < s; v++) {
+                childStart[v + 1] += childStart[v];
+            }
+            int[] children = new int[Math.max(0, s - 1)];
+            int[] fill = Arrays.copyOf(childStart, s);
+            for (int i = 1; i < s; i++) {
+                int v = queue[i];
+                children[fill[parent[v]]++] = v;
+            }
+            int[] height = new int[s];
+            for (int i = s - 1; i > 0; i--) {
+                int v = queue[i];
+                height[parent[v]] = Math.max(height[parent[v]], height[v] + 1);
+            }
+
+            // group by height (counting sort)
+            int maxHeight = height[root];
+            int[] levelStart = new int[maxHeight + 2];
+            for (int v = 0; v < s; v++) levelStart[height[v] + 1]++;
+            for (int h = 0; h <= maxHeight; h++) levelStart[h + 1] += levelStart[h];
+            Integer[] byLevel = new Integer[s];
+            int[] levelFill = Arrays.copyOf(levelStart, maxHeight + 1);
+            for (int v = 0; v < s; v++) byLevel[levelFill[height[v]]++] = v;
+
+            // rank one height at a time; children are all lower, so already ranked
+            int[] rank = new int[s];
+            int nextRank = 0;
+            for (int h = 0; h <= maxHeight; h++) {
+                for (int i = levelStart[h]; i < levelStart[h + 1]; i++) {
+                    sortChildrenByRank(byLevel[i], childStart, children, rank);
+                }
+                Comparator<Integer> order = (x, y) -> compareSubtrees(x, y, childStart, children, rank);
+                Arrays.sort(byLevel, levelStart[h], levelStart[h + 1], order);
+                for (int i = levelStart[h]; i < levelStart[h + 1]; i++) {
+                    if (i > levelStart[h] && order.compare(byLevel[i - 1], byLevel[i]) != 0) nextRank++;
+                    rank[byLevel[i]] = nextRank;
+                }
+                nextRank++;
+            }
+
+            // preorder walk, children in rank order
+            int[] code = new int[2 * s];
+            int[] vertexAt = new int[s];
+            int[] stack = queue; // the BFS order isn't needed any more
+            int top = 0;
+            stack[top++] = root;
+            for (int k = 0; top > 0; k++) {
+                int v = stack[--top];
+                int global = vertex(v);
+                code[2 * k] = graph.valueOf(global);
+                code[2 * k + 1] = (childStart[v + 1] - childStart[v]) << 8 | (graph.flagsOf(global) & 0xff);
+                vertexAt[k] = global;
+                for (int i = childStart[v + 1] - 1; i >= childStart[v]; i--) {
+                    stack[top++] = children[i];
+                }
+            }
+            return new TreeCanonicalForm(code, vertexAt);
+        }
+
+        private static void sortChildrenByRank(int v, int[] childStart, int[] children, int[] rank) {
+            int from = childStart[v];
+            int to = childStart[v + 1];
+            if (to - from < 2) return;
+            long[] keyed = new long[to - from];
+            for (int i = from; i < to; i++) {
+                keyed[i - from] = (long) rank[children[i]] << 32 | children[i];
+            }
+            Arrays.sort(keyed);
+            for (int i = from; i < to; i++) {
+                children[i] = (int) keyed[i - from];
+            }
+        }
+
+        private int compareSubtrees(int x, int y, int[] childStart, int[] children, int[] rank) {
+            int gx = vertex(x);
+            int gy = vertex(y);
+            int cmp = Integer.compare(graph.valueOf(gx), graph.valueOf(gy));
+            if (cmp != 0) return cmp;
+            cmp = Integer.compare(graph.flagsOf(gx), graph.flagsOf(gy));
+            if (cmp != 0) return cmp;
+            int nx = childStart[x + 1] - childStart[x];
+            int ny = childStart[y + 1] - childStart[y];
+            cmp = Integer.compare(nx, ny);
+            for (int i = 0; cmp == 0 && i < nx; i++) {
+                cmp = Integer.compare(rank[children[childStart[x] + i]], rank[children[childStart[y] + i]]);
+            }
+            return cmp;
+        }
+    }
+}
@@ -0,0 +1,569 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exact strategy for graphs that are "almost trees": forests with a few extra
+ * edges that close cycles.  DPStrategy can't handle those (it just ignores
+ * the edges that don't fit its DFS tree), and brute force is hopeless on
+ * anything big.
+ * <p>
+ * Only the relative order of neighbors matters, so an attack order comes down
+ * to deciding which end of each edge goes first.  This strategy builds a tree
+ * decomposition with the min-degree elimination heuristic: forts are
+ * eliminated one at a time (always one with the fewest remaining neighbors,
+ * which are then all connected to each other), and the bag of a fort is the
+ * fort plus the neighbors it had left when it was eliminated.  The DP then
+ * runs over the forts in elimination order.  For the bag neighbors of a fort
+ * (the "separator"), the table stores the best gold of everything eliminated
+ * below it, for each
+ * <ul>
+ *   <li>relative order of the separator forts, and</li>
+ *   <li>set of separator forts that are allowed to end up alerted.</li>
+ * </ul>
+ * Each edge is checked when its first end is eliminated, since both ends are
+ * in that bag.  If an edge would alert a fort that isn't allowed to be
+ * alerted, that combination is thrown out.  A fort that is allowed to be
+ * alerted is counted at half gold, which is exact for the best combination.
+ * The work per fort is about (w + 1)! * 2^(w + 1) table entries for
+ * width w, so it's exponential in the width only.  A plain forest has width 1
+ * and is solved in linear time.
+ * <p>
+ * The order itself is rebuilt top-down (reverse elimination order) in a
+ * linked list.  Each fort gets inserted next to its separator forts, in the
+ * position its table entry chose.  Forts inserted later never change the
+ * order of the forts already in the list, so every edge keeps the orientation
+ * the DP counted.  Everything runs off loops, no recursion.
+ * <p>
+ * If the elimination hits a fort with more than {@code maxWidth} neighbors
+ * left, the graph is too tangled for this approach, and the fallback strategy
+ * (BranchAndBoundStrategy by default) is used instead.  The same goes for a
+ * decomposition whose total table size (the sum of those per-fort entry
+ * counts) is over {@code maxWork}, so callers can bound the running time
+ * before the DP starts, not just the width.
+ */
+public class TreeDecompositionStrategy implements RobbingStrategy {
+
+    /** Widest decomposition solved by default: 8 forts per bag. */
+    public static final int DEFAULT_MAX_WIDTH = 7;
+
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private final int maxWidth;
+    private final long maxWork;
+    private final RobbingStrategy fallback;
+    private int width;
+
+    /**
+     * Creates the strategy with {@link #DEFAULT_MAX_WIDTH} and BranchAndBoundStrategy
+     * as the fallback.
+     */
+    public TreeDecompositionStrategy() {
+        this(DEFAULT_MAX_WIDTH, new BranchAndBoundStrategy());
+    }
+
+    /**
+     * @param maxWidth - widest decomposition to solve (bags of maxWidth + 1 forts); at most 10
+     * @param fallback - strategy used for graphs whose decomposition is wider than that
+     */
+    public TreeDecompositionStrategy(int maxWidth, RobbingStrategy fallback) {
+        this(maxWidth, Long.MAX_VALUE, fallback);
+    }
+
+    /**
+     * @param maxWidth - widest decomposition to solve (bags of maxWidth + 1 forts); at most 10
+     * @param maxWork  - most DP table entries (summed over all forts) to compute; bigger jobs
+     *                 go to the fallback too
+     * @param fallback - strategy used for graphs that are too wide or too much work
+     */
+    public TreeDecompositionStrategy(int maxWidth, long maxWork, RobbingStrategy fallback) {
+        if (maxWidth < 1 || maxWidth > 10) {
+            throw new IllegalArgumentException("maxWidth must be between 1 and 10: " + maxWidth);
+        }
+        if (maxWork < 1) {
+            throw new IllegalArgumentException("maxWork must be positive: " + maxWork);
+        }
+        this.maxWidth = maxWidth;
+        this.maxWork = maxWork;
+        this.fallback = fallback;
+    }
+
+    /**
+     * @return the width of the decomposition used by the last call (0 for a graph
+     * without edges), or -1 if it was too wide (or too much work) and the
+     * fallback strategy was used
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public List<String> chooseOrderToAttack(LabeledValueGraph graph) {
+        graph.freeze();
+        long start = Metrics.startTimer();
+        Decomposition d = Decomposition.minDegree(graph, maxWidth);
+        Metrics.stopTimer(Metrics.Phase.DECOMPOSE, start);
+        if (d == null || d.work > maxWork) {
+            width = -1;
+            return fallback.chooseOrderToAttack(graph);
+        }
+        width = d.width;
+        start = Metrics.startTimer();
+        Solver solver = new Solver(graph, d);
+        solver.solve();
+        Metrics.stopTimer(Metrics.Phase.SOLVE, start);
+        start = Metrics.startTimer();
+        List<String> attackOrder = solver.attackOrder();
+        Metrics.stopTimer(Metrics.Phase.RECONSTRUCT, start);
+        return attackOrder;
+    }
+
+    /**
+     * An elimination ordering plus the separator ("bag minus the fort itself")
+     * of each fort.
+     */
+    static final class Decomposition {
+        final int[] order;   // forts in elimination order
+        final int[][] bag;   // bag[v] = v's neighbors when it was eliminated
+        final int width;     // largest separator
+        final long work;     // DP table entries over all forts, (s + 1)! * 2^(s + 1) for separator size s
+
+        private Decomposition(int[] order, int[][] bag, int width, long work) {
+            this.order = order;
+            this.bag = bag;
+            this.width = width;
+            this.work = work;
+        }
+
+        /**
+         * Eliminates the fort with the fewest remaining neighbors each time.
+         *
+         * @return the decomposition, or null if some separator has more than maxWidth forts
+         */
+        static Decomposition minDegree(LabeledValueGraph graph, int maxWidth) {
+            int n = graph.vertexCount();
+            int[][] neighbors = new int[n][];  // may still list eliminated forts, see degree
+            int[] length = new int[n];
+            int[] degree = new int[n];         // number of neighbors not yet eliminated
+            int[] stamp = new int[n];          // stamp[w] == v + 1 while collecting v's neighbors
+            LongMinHeap heap = new LongMinHeap(n);
+
+            for (int v = 0; v < n; v++) {
+                int[] list = new int[graph.degree(v)];
+                int len = 0;
+                for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                    int w = graph.adjTarget(e);
+                    if (w != v && stamp[w] != v + 1) {
+                        stamp[w] = v + 1;
+                        list[len++] = w;
+                    }
+                }
+                neighbors[v] = list;
+                length[v] = len;
+                degree[v] = len;
+                heap.push((long) len << 32 | v);
+            }
+
+            boolean[] eliminated = new boolean[n];
+            int[] order = new int[n];
+            int[][] bag = new int[n][];
+            int width = 0;
+            long work = 0;
+            for (int k = 0; k < n; k++) {
+                int v;
+                long key;
+                do {
+                    key = heap.pop();
+                    v = (int) key;
+                } while (eliminated[v] || (key >>> 32) != degree[v]); // skip stale entries
+                if (degree[v] > maxWidth) {
+                    return null;
+                }
+
+                int[] separator = new int[degree[v]];
+                int s = 0;
+                for (int i = 0; i < length[v]; i++) {
+                    int w = neighbors[v][i];
+                    if (!eliminated[w]) {
+                        separator[s++] = w;
+                    }
+                }
+                eliminated[v] = true;
+                order[k] = v;
+                bag[v] = separator;
+                neighbors[v] = null;
+                width = Math.max(width, s);
+                work = Math.min(Long.MAX_VALUE / 2, work + tableSize(s));
+
+                // v's remaining neighbors lose v and become a clique
+                for (int a : separator) {
+                    degree[a]--;
+                }
+                for (int i = 0; i < s; i++) {
+                    for (int j = i + 1; j < s; j++) {
+                        int a = separator[i];
+                        int b = separator[j];
+                        if (!contains(neighbors, length, a, b)) {
+                            add(neighbors, length, a, b);
+                            add(neighbors, length, b, a);
+                            degree[a]++;
+                            degree[b]++;
+                        }
+                    }
+                }
+                for (int a : separator) {
+                    if (length[a] > 2 * degree[a] + 4) {
+                        compact(neighbors, length, eliminated, a);
+                    }
+                    heap.push((long) degree[a] << 32 | a);
+                }
+            }
+            return new Decomposition(order, bag, width, work);
+        }
+
+        // (s + 1)! * 2^(s + 1): bag orders times alert masks for a fort with s separator forts
+        private static long tableSize(int s) {
+            long size = 1L << (s + 1);
+            for (int i = 2; i <= s + 1; i++) {
+                size *= i;
+            }
+            return size;
+        }
+
+        // scans the shorter list (a and b are both still in the graph, so stale entries don't matter)
+        private static boolean contains(int[][] neighbors, int[] length, int a, int b) {
+            if (length[a] > length[b]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            int[] list = neighbors[a];
+            for (int i = 0; i < length[a]; i++) {
+                if (list[i] == b) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void add(int[][] neighbors, int[] length, int a, int b) {
+            if (length[a] == neighbors[a].length) {
+                neighbors[a] = Arrays.copyOf(neighbors[a], Math.max(4, 2 * length[a]));
+            }
+            neighbors[a][length[a]++] = b;
+        }
+
+        private static void compact(int[][] neighbors, int[] length, boolean[] eliminated, int a) {
+            int[] list = neighbors[a];
+            int len = 0;
+            for (int i = 0; i < length[a]; i++) {
+                if (!eliminated[list[i]]) {
+                    list[len++] = list[i];
+                }
+            }
+            length[a] = len;
+        }
+    }
+
+    /**
+     * The DP tables and the reconstruction for one decomposition.
+     * <p>
+     * A separator state is (rank of the separator forts' relative order,
+     * mask of the forts allowed to be alerted), stored at index
+     * {@code rank << s | mask} for a separator of s forts.  Within the bag of
+     * v, v itself is index s.  Gold is kept in half-gold units so it adds up
+     * exactly.
+     */
+    private static final class Solver {
+        private final LabeledValueGraph graph;
+        private final Decomposition d;
+        private final int n;
+        private final int[] parent;      // the first-eliminated separator fort, -1 for roots
+        private final int[] childStart;  // children of v are children[childStart[v] .. childStart[v+1])
+        private final int[] children;
+        private final int[][] inParent;  // inParent[c][j] = index of c's j-th separator fort in its parent's bag
+        private final long[][] best;     // DP table per fort, dropped once the parent has used it
+        private final byte[][] choice;   // per table entry: v's position in its bag order << 1 | allowed to be alerted
+
+        Solver(LabeledValueGraph graph, Decomposition d) {
+            this.graph = graph;
+            this.d = d;
+            n = graph.vertexCount();
+            int[] rank = new int[n];
+            for (int k = 0; k < n; k++) {
+                rank[d.order[k]] = k;
+            }
+            parent = new int[n];
+            childStart = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                int p = -1;
+                for (int w : d.bag[v]) {
+                    if (p < 0 || rank[w] < rank[p]) {
+                        p = w;
+                    }
+                }
+                parent[v] = p;
+                if (p >= 0) {
+                    childStart[p + 1]++;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                childStart[v + 1] += childStart[v];
+            }
+            children = new int[childStart[n]];
+            int[] fill = Arrays.copyOf(childStart, n);
+            for (int v : d.order) {
+                if (parent[v] >= 0) {
+                    children[fill[parent[v]]++] = v;
+                }
+            }
+            inParent = new int[n][];
+            best = new long[n][];
+            choice = new byte[n][];
+        }
+
+        void solve() {
+            int maxBag = d.width + 1;
+            int[] pos = new int[maxBag];
+            int[] posInBag = new int[maxBag];
+            int[] stamp = new int[n];
+            Arrays.fill(stamp, -1);
+            int[] kidMask = new int[64];   // kidMask[k * 2^(s+1) + m] = bag mask m seen from child k
+            int[] kidBase = new int[64];   // table offset of child k's order for the current bag order
+
+            for (int v : d.order) {
+                int[] sep = d.bag[v];
+                int s = sep.length;
+                int kids = childStart[v + 1] - childStart[v];
+
+                // where each child's separator forts sit in v's bag, and how v's masks project onto them
+                int bagMasks = 1 << (s + 1);
+                if (kidMask.length < kids * bagMasks) {
+                    kidMask = new int[Math.max(kids * bagMasks, 2 * kidMask.length)];
+                    kidBase = new int[kidMask.length];
+                }
+                for (int k = 0; k < kids; k++) {
+                    int c = children[childStart[v] + k];
+                    int[] map = new int[d.bag[c].length];
+                    for (int j = 0; j < map.length; j++) {
+                        int w = d.bag[c][j];
+                        map[j] = w == v ? s : indexOf(sep, w);
+                    }
+                    inParent[c] = map;
+                    for (int mask = 0; mask < bagMasks; mask++) {
+                        kidMask[k * bagMasks + mask] = gather(mask, map);
+                    }
+                }
+
+                // which separator forts are v's actual neighbors
+                for (int e = graph.adjStart(v); e < graph.adjEnd(v); e++) {
+                    stamp[graph.adjTarget(e)] = v;
+                }
+                byte flags = graph.flagsOf(v);
+                boolean vShield = (flags & LabeledValueGraph.SHIELD) != 0;
+                boolean alwaysAlerted = (flags & (LabeledValueGraph.IMMUNE | LabeledValueGraph.SELF_ALERT)) != 0;
+                long fullGold = 2L * graph.valueOf(v);
+                long alertedGold = (flags & LabeledValueGraph.IMMUNE) != 0 ? fullGold : graph.valueOf(v);
+
+                int orders = factorial(s);
+                long[] table = new long[orders << s];
+                byte[] picked = new byte[orders << s];
+                Arrays.fill(table, INVALID);
+
+                for (int r = 0; r < orders; r++) {
+                    decode(r, s, pos);
+                    for (int p = 0; p <= s; p++) {
+                        for (int i = 0; i < s; i++) {
+                            posInBag[i] = pos[i] < p ? pos[i] : pos[i] + 1;
+                        }
+                        posInBag[s] = p;
+
+                        // edges from v to its separator: whoever goes first alerts the other
+                        boolean vMustBeAlerted = false;
+                        int mustBeAlerted = 0;
+                        for (int i = 0; i < s; i++) {
+                            int w = sep[i];
+                            if (stamp[w] != v) continue;
+                            if (posInBag[i] < p) {
+                                if ((graph.flagsOf(w) & LabeledValueGraph.SHIELD) == 0) vMustBeAlerted = true;
+                            } else if (!vShield) {
+                                mustBeAlerted |= 1 << i;
+                            }
+                        }
+                        for (int k = 0; k < kids; k++) {
+                            int c = children[childStart[v] + k];
+                            kidBase[k] = rank(posInBag, inParent[c]) << inParent[c].length;
+                        }
+
+                        for (int alerted = alwaysAlerted || vMustBeAlerted ? 1 : 0; alerted <= 1; alerted++) {
+                            long gold = alerted == 1 ? alertedGold : fullGold;
+                            for (int mask = mustBeAlerted; mask < 1 << s; mask = (mask + 1) | mustBeAlerted) {
+                                int bagMask = mask | alerted << s;
+                                long total = gold;
+                                for (int k = 0; k < kids && total != INVALID; k++) {
+                                    long sub = best[children[childStart[v] + k]][kidBase[k] | kidMask[k * bagMasks + bagMask]];
+                                    total = sub == INVALID ? INVALID : total + sub;
+                                }
+                                int slot = r << s | mask;
+                                if (total > table[slot]) {
+                                    table[slot] = total;
+                                    picked[slot] = (byte) (p << 1 | alerted);
+                                }
+                            }
+                        }
+                    }
+                }
+
+                for (int k = 0; k < kids; k++) {
+                    best[children[childStart[v] + k]] = null;
+                }
+                best[v] = table;
+                choice[v] = picked;
+            }
+        }
+
+        /** @return the attack order, after {@link #solve()} */
+        List<String> attackOrder() {
+            int[] next = new int[n + 1]; // doubly linked list with n as the head/tail sentinel
+            int[] prev = new int[n + 1];
+            next[n] = n;
+            prev[n] = n;
+            int[] stateRank = new int[n];
+            int[] stateMask = new int[n];
+            int[] pos = new int[d.width + 1];
+            int[] posInBag = new int[d.width + 1];
+
+            for (int k = n - 1; k >= 0; k--) {
+                int v = d.order[k];
+                int[] sep = d.bag[v];
+                int s = sep.length;
+                int picked = choice[v][stateRank[v] << s | stateMask[v]];
+                int p = picked >> 1;
+                choice[v] = null;
+
+                decode(stateRank[v], s, pos);
+                int at = n; // insert v just before this one (n: at the end)
+                for (int i = 0; i < s; i++) {
+                    if (pos[i] == p) at = sep[i];
+                    if (p == s && pos[i] == s - 1) at = next[sep[i]];
+                }
+                next[v] = at;
+                prev[v] = prev[at];
+                next[prev[at]] = v;
+                prev[at] = v;
+
+                for (int i = 0; i < s; i++) {
+                    posInBag[i] = pos[i] < p ? pos[i] : pos[i] + 1;
+                }
+                posInBag[s] = p;
+                int bagMask = stateMask[v] | (picked & 1) << s;
+                for (int i = childStart[v]; i < childStart[v + 1]; i++) {
+                    int c = children[i];
+                    stateRank[c] = rank(posInBag, inParent[c]);
+                    stateMask[c] = gather(bagMask, inParent[c]);
+                }
+            }
+
+            List<String> attackOrder = new ArrayList<>(n);
+            for (int v = next[n]; v != n; v = next[v]) {
+                attackOrder.add(graph.labelOf(v));
+            }
+            return attackOrder;
+        }
+
+        private static int indexOf(int[] array, int x) {
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] == x) return i;
+            }
+            throw new IllegalStateException("separator is not inside the parent's bag");
+        }
+
+        private static int gather(int mask, int[] map) {
+            int out = 0;
+            for (int j = 0; j < map.length; j++) {
+                out |= (mask >>> map[j] & 1) << j;
+            }
+            return out;
+        }
+
+        private static int factorial(int s) {
+            int f = 1;
+            for (int i = 2; i <= s; i++) f *= i;
+            return f;
+        }
+
+        /**
+         * Ranks the relative order of the forts picked out by map (by their
+         * positions in pos) as a Lehmer code, 0 .. map.length! - 1.
+         */
+        private static int rank(int[] pos, int[] map) {
+            int m = map.length;
+            int r = 0;
+            for (int i = 0; i < m; i++) {
+                int smallerLater = 0;
+                for (int j = i + 1; j < m; j++) {
+                    if (pos[map[j]] < pos[map[i]]) smallerLater++;
+                }
+                r = r * (m - i) + smallerLater;
+            }
+            return r;
+        }
+
+        /** Inverse of rank: fills pos[0 .. s) with the positions of order number r. */
+        private static void decode(int r, int s, int[] pos) {
+            for (int i = s - 1; i >= 0; i--) {
+                pos[i] = r % (s - i); // Lehmer digit for now
+                r /= s - i;
+            }
+            int used = 0; // bit set of the positions taken so far
+            for (int i = 0; i < s; i++) {
+                int digit = pos[i];
+                int value = -1;
+                do {
+                    value++;
+                    while ((used >>> value & 1) != 0) value++;
+                } while (digit-- > 0);
+                pos[i] = value;
+                used |= 1 << value;
+            }
+        }
+    }
+
+    /** Binary min-heap of longs (degree << 32 | fort), with stale entries left in. */
+    private static final class LongMinHeap {
+        private long[] heap;
+        private int size;
+
+        LongMinHeap(int capacity) {
+            heap = new long[Math.max(16, capacity)];
+        }
+
+        void push(long x) {
+            if (size == heap.length) heap = Arrays.copyOf(heap, 2 * size);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= x) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = x;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+                if (heap[child] >= last) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}